@@ -0,0 +1,121 @@
+import utils.OutputCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compilation of many files in one process on a pool of workers, so that starting
+ * and warming up the JVM is paid once for all of them. The outputs of each file
+ * are written next to it, see outputsOf().
+ */
+public class BatchCompiler {
+    private static final String SUFFIX = ".sy";
+
+    private final CompilerSession session;
+    private final OutputCache cache;
+    private final List<String> options;
+    private final int workers;
+
+    /**
+     * @param cache outputs to reuse, or null.
+     * @param options options of session, which are part of the keys of cache.
+     */
+    public BatchCompiler(CompilerSession session, OutputCache cache, List<String> options, int workers) {
+        this.session = session;
+        this.cache = cache;
+        this.options = options;
+        this.workers = workers;
+    }
+
+    /**
+     * @return all files ending with .sy under path if it is a directory, or else
+     *  the files listed in path, one per line.
+     */
+    public static List<String> inputsOf(String path) throws IOException {
+        Path root = Paths.get(path);
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> files = Files.walk(root)) {
+                return files.filter(file -> file.toString().endsWith(SUFFIX) && Files.isRegularFile(file))
+                        .map(Path::toString).sorted().collect(Collectors.toList());
+            }
+        }
+        return Files.readAllLines(root).stream().map(String::trim)
+                .filter(line -> !line.isEmpty()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the files output, error, llvm and mips of input, which are named
+     *  after input with its extension replaced, a/b.sy by a/b.llvm_ir.txt for example.
+     */
+    public static String[] outputsOf(String input) {
+        File file = new File(input);
+        String name = file.getName(), parent = file.getParent();
+        int dot = name.lastIndexOf('.');
+        String stem = new File(parent, dot > 0 ? name.substring(0, dot) : name).getPath();
+        return new String[]{stem + ".output.txt", stem + ".error.txt", stem + ".llvm_ir.txt", stem + ".mips.txt"};
+    }
+
+    /**
+     * Compile inputs, and print the throughput and the latencies of files.
+     * A file failing to compile is reported and does not stop the others.
+     */
+    public void run(List<String> inputs) {
+        int size = inputs.size();
+        long[] latencies = new long[size];
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long begin = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                String input = inputs.get(index);
+                long start = System.nanoTime();
+                try {
+                    Compiler.compile(session, cache, options, input, outputsOf(input));
+                } catch (RuntimeException | StackOverflowError e) {
+                    System.err.println(input + ": " + e);
+                    e.printStackTrace();
+                    failures.incrementAndGet();
+                }
+                latencies[index] = System.nanoTime() - start;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("batch: %d files, %d failed, on %d workers in %.2f s, %.1f files/s, "
+                        + "latency p50 %.2f ms, p99 %.2f ms%n",
+                size, failures.get(), workers, seconds, size / seconds,
+                percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6);
+    }
+
+    /**
+     * @return the p-th percentile of sorted by nearest rank, or 0 if sorted is empty.
+     */
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
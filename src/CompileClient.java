@@ -0,0 +1,100 @@
+import utils.OutputCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A thin client of CompileServer, used the same way as Compiler: it sends
+ * testfile.txt and the options to the server, and writes the outputs it gets
+ * back. -port=<n> is the port of the server, and -cache[=<dir>] is applied here,
+ * see Compiler. If no server is running, the file is compiled here by Compiler.
+ */
+public class CompileClient {
+    public static final int DEFAULT_PORT = 5320;
+
+    private static final String USAGE = "usage: CompileClient [-port=<n>] [-cache[=<dir>]] [options of Compiler]";
+
+    /** Status of a response, see CompileServer.
+     */
+    static final int OK = 0;
+    static final int FAILED = 1;
+
+    public static void main(String[] args) {
+        String input = "testfile.txt";
+        String[] outputs = {"output.txt", "error.txt", "llvm_ir.txt", "mips.txt"};
+        String outputCacheDir = null;
+        int port = DEFAULT_PORT;
+        List<String> options = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("-port=")) port = CompilerSession.Options.parseNumber(arg, "-port=".length(), 1, 65535);
+                else if (arg.equals("-cache")) outputCacheDir = ".sysy-output-cache";
+                else if (arg.startsWith("-cache=")) outputCacheDir = arg.substring("-cache=".length());
+                else options.add(arg);
+            }
+            // Checked here too, as the server would only fail on them.
+            CompilerSession.Options.parse(options);
+        } catch (IllegalArgumentException e) {
+            Compiler.usage(e.getMessage(), USAGE);
+            return;
+        }
+
+        OutputCache cache = outputCacheDir == null ? null
+                : new OutputCache(outputCacheDir, OutputCache.DEFAULT_MAX_BYTES);
+        String key = cache == null ? null : cache.key(input, options);
+        if (key == null || !cache.fetch(key, outputs)) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(options.size());
+                for (String option : options) writeString(out, option);
+                writeString(out, new String(Files.readAllBytes(Paths.get(input)), StandardCharsets.ISO_8859_1));
+                out.flush();
+
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != OK) {
+                    System.err.println("server: " + readString(in));
+                    System.exit(1);
+                }
+                // Written as Writer does, see Writer(String, String, String, String).
+                for (String output : outputs) {
+                    Files.deleteIfExists(Paths.get(output));
+                    Files.write(Paths.get(output), readString(in).getBytes(Charset.defaultCharset()));
+                }
+            } catch (ConnectException e) {
+                Compiler.compile(new CompilerSession(CompilerSession.Options.parse(options)), null, options, input, outputs);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            if (key != null) cache.store(key, outputs);
+        }
+        if (cache != null) cache.close();
+    }
+
+    /**
+     * Strings are sent as the count of their bytes in UTF-8 and the bytes.
+     */
+    static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A daemon compiling for CompileClient, so that a compilation pays neither for
+ * starting nor for warming up a JVM. It listens on the loopback interface only,
+ * and serves each connection on a thread of its own.
+ * A request is the count of options, the options and the source. A response is
+ * OK and the texts of output.txt, error.txt, llvm_ir.txt and mips.txt, or FAILED
+ * and a message. See CompileClient.writeString() for how strings are sent.
+ */
+public class CompileServer {
+    private final int port;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    /** Sessions keyed by options, kept for the server to live.
+     */
+    private final Map<List<String>, CompilerSession> sessions = new ConcurrentHashMap<>();
+
+    public CompileServer(int port) {
+        this.port = port;
+    }
+
+    public void run() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 64, InetAddress.getLoopbackAddress())) {
+            System.err.println("server: listening on " + server.getLocalSocketAddress());
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket socket = server.accept();
+                try {
+                    pool.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    socket.close();
+                    throw e;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            List<String> options = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) options.add(CompileClient.readString(in));
+            String source = CompileClient.readString(in);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            try {
+                CompilerSession session = sessions.computeIfAbsent(options,
+                        key -> new CompilerSession(CompilerSession.Options.parse(key)));
+                CompilerSession.Result result = session.compile("testfile.txt", source);
+                out.writeInt(CompileClient.OK);
+                CompileClient.writeString(out, result.getOutput());
+                CompileClient.writeString(out, result.getError());
+                CompileClient.writeString(out, result.getLlvm());
+                CompileClient.writeString(out, result.getMips());
+            } catch (RuntimeException | StackOverflowError e) {
+                e.printStackTrace();
+                out.writeInt(CompileClient.FAILED);
+                CompileClient.writeString(out, e.toString());
+            }
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,73 +1,88 @@
-import backend.MIPSBuilder;
-import midend.mir.AssemblyBuilder;
-import midend.mir.Module;
-import frontend.exception.SysYException;
-import frontend.token.Tokens;
-import frontend.tree.SysYTree.*;
-import frontend.Parser;
-import frontend.Scanner;
-import frontend.Tokenizer;
-import utils.Reader;
-import utils.Writer;
+import utils.OutputCache;
 
-public class Compiler {
-    public static Reader reader;
-    public static Writer writer;
-    public static Tokenizer tokenizer;
-    public static Parser parser;
-    public static AssemblyBuilder builder;
-
-    public static MIPSBuilder mipsBuilder;
-
-    public static Tokens tokens = new Tokens();
-    public static Scanner scanner = new Scanner();
-    public static Module module = new Module();
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+public class Compiler {
     public static void main(String[] args) {
         String input = "testfile.txt", output = "output.txt", error = "error.txt",
             llvm = "llvm_ir.txt", mips = "mips.txt";
-        SysYCompilationUnit compUnit = null;
-
-        reader = new Reader(input);
-        writer = new Writer(output, error, llvm, mips);
-        builder = new AssemblyBuilder(writer, module);
-        mipsBuilder = new MIPSBuilder(writer, module);
-
-        tokenizer = new Tokenizer(tokens, reader, scanner);
+        // -cache[=<dir>] reuses all outputs of a former compilation of the same source and options.
+        // -batch=<dir or list> compiles all files in dir or listed in list on -workers=<n> threads,
+        // see BatchCompiler. -server serves CompileClient on -port=<n> instead of compiling.
+        // See CompilerSession.Options for the others.
+        String outputCacheDir = null, batch = null;
+        int workers = Runtime.getRuntime().availableProcessors(), port = CompileClient.DEFAULT_PORT;
+        boolean server = false;
+        List<String> options = new ArrayList<>();
+        CompilerSession session;
         try {
-            tokenizer.tokenAnalyse();
-        } catch (SysYException e) {
-            if (e.getKind() != SysYException.EKind.o) e.printStackTrace();
+            for (String arg : args) {
+                if (arg.equals("-cache")) outputCacheDir = ".sysy-output-cache";
+                else if (arg.startsWith("-cache=")) outputCacheDir = arg.substring("-cache=".length());
+                else if (arg.startsWith("-batch=")) batch = arg.substring("-batch=".length());
+                else if (arg.startsWith("-workers=")) workers = CompilerSession.Options.parseNumber(arg,
+                        "-workers=".length(), 1, CompilerSession.Options.MAX_THREADS);
+                else if (arg.equals("-server")) server = true;
+                else if (arg.startsWith("-port=")) port = CompilerSession.Options.parseNumber(arg,
+                        "-port=".length(), 1, 65535);
+                else options.add(arg);
+            }
+            session = new CompilerSession(CompilerSession.Options.parse(options));
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage(), USAGE);
+            return;
         }
+        OutputCache cache = outputCacheDir == null ? null
+                : new OutputCache(outputCacheDir, OutputCache.DEFAULT_MAX_BYTES);
 
-        parser = new Parser(scanner);
-        try {
-            compUnit = parser.syntaxAnalyse();
-        } catch (SysYException e) {
-            if (e.getKind() != SysYException.EKind.o) e.printStackTrace();
+        if (server) {
+            try {
+                new CompileServer(port).run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
         }
-
-        /*
-        if (compUnit != null) {
+        if (batch != null) {
             try {
-                compUnit.check(new SymbolSysYTable(null), false);
-            } catch (Exception e) {
+                new BatchCompiler(session, cache, options, workers).run(BatchCompiler.inputsOf(batch));
+            } catch (IOException e) {
                 e.printStackTrace();
             }
+        } else {
+            compile(session, cache, options, input, new String[]{output, error, llvm, mips});
         }
 
-        List<SysYException> errors = new ArrayList<SysYException>() {{
-            addAll(tokenizer.errors);
-            addAll(parser.errors);
-            addAll(SysYTree.errors);
-            sort(Comparator.comparingInt(SysYException::getLine));
-        }};
-        writer.writeErrors(errors);
-         */
+        if (cache != null) {
+            cache.close();
+            System.err.println("cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses, "
+                    + cache.getTotalHits() + " hits, " + cache.getTotalMisses() + " misses in all");
+        }
+    }
 
-        builder.generateLLVM(compUnit);
-        mipsBuilder.genModule();
+    private static final String USAGE = "usage: Compiler [-j<n>] [-stream | -stream-thread] [-check]"
+            + " [-incremental[=<dir>]] [-ftime-report[=<file>]] [-O0 | -O1 | -O2] [-fmem2reg]"
+            + " [-cache[=<dir>]] [-batch=<dir or list>] [-workers=<n>] [-server] [-port=<n>]";
+
+    /**
+     * Print message and usage, and exit with status 2.
+     */
+    static void usage(String message, String usage) {
+        System.err.println(message);
+        System.err.println(usage);
+        System.exit(2);
+    }
 
-        writer.close();
+    /**
+     * Compile input into outputs, the files output, error, llvm and mips, reusing
+     * them from cache unless cache is null.
+     */
+    static void compile(CompilerSession session, OutputCache cache, List<String> options, String input, String[] outputs) {
+        String key = cache == null ? null : cache.key(input, options);
+        if (key != null && cache.fetch(key, outputs)) return;
+        session.compile(input, outputs[0], outputs[1], outputs[2], outputs[3]);
+        if (key != null) cache.store(key, outputs);
     }
 }
@@ -0,0 +1,328 @@
+import backend.MIPSBuilder;
+import midend.Mem2Reg;
+import midend.PassManager;
+import midend.mir.AssemblyBuilder;
+import midend.mir.Module;
+import frontend.Checker;
+import frontend.Fingerprints;
+import frontend.exception.Diagnostics;
+import frontend.exception.SysYException;
+import frontend.symbolTable.SymbolSysYTable;
+import frontend.token.TokenTable;
+import frontend.tree.FlatTree;
+import frontend.Parser;
+import frontend.Scanner;
+import frontend.TokenPipe;
+import frontend.Tokenizer;
+import utils.FunctionCache;
+import utils.Events;
+import utils.Reader;
+import utils.TimeReport;
+import utils.Writer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compilations with the same options. All state of a compilation belongs to
+ * the compilation, so one session, or many, may compile on many threads at once.
+ */
+public class CompilerSession {
+    public static class Options {
+        /** The most threads -j<n> may ask for, as for -workers=<n> of Compiler.
+         */
+        public static final int MAX_THREADS = 1024;
+
+        private int threads = 1;
+        private boolean stream = false;
+        private boolean streamThread = false;
+        private boolean checkOnly = false;
+        private String incrementalDir = null;
+        private boolean timeReport = false;
+        private String timeReportFile = null;
+        private boolean mem2reg = false;
+        private int optLevel = 0;
+
+        public Options() {}
+
+        /**
+         * -j<n> lexes and checks on n threads, -stream lexes while parsing, on another thread with
+         * -stream-thread. -check writes errors and stops instead of generating code.
+         * -incremental[=<dir>] reuses code of unchanged functions cached in dir.
+         * -ftime-report prints the time and memory taken by each phase, and writes them as JSON to
+         * file with -ftime-report=<file>, see TimeReport. -O0, -O1 and -O2 choose the passes run
+         * over IR before generating MIPS, see midend.PassManager, where -fmem2reg adds mem2reg,
+         * which promotes local variables to registers, see midend.Mem2Reg.
+         * @return options given by args of the command line, where unknown args are ignored.
+         * @throws IllegalArgumentException if the count of -j<n> is out of range.
+         */
+        public static Options parse(List<String> args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (arg.matches("-j\\d+")) options.threads = parseNumber(arg, 2, 1, MAX_THREADS);
+                else if (arg.equals("-incremental")) options.incrementalDir = ".sysy-cache";
+                else if (arg.startsWith("-incremental=")) options.incrementalDir = arg.substring("-incremental=".length());
+                else if (arg.equals("-stream")) options.stream = true;
+                else if (arg.equals("-stream-thread")) options.stream = options.streamThread = true;
+                else if (arg.equals("-check")) options.checkOnly = true;
+                else if (arg.equals("-ftime-report")) options.timeReport = true;
+                else if (arg.equals("-fmem2reg")) options.mem2reg = true;
+                else if (arg.matches("-O[0-2]")) options.optLevel = arg.charAt(2) - '0';
+                else if (arg.startsWith("-ftime-report=")) {
+                    options.timeReport = true;
+                    options.timeReportFile = arg.substring("-ftime-report=".length());
+                }
+            }
+            return options;
+        }
+
+        /**
+         * @param start the index in arg where the number begins.
+         * @return the number at the end of arg.
+         * @throws IllegalArgumentException naming arg if it is not a number from min to max.
+         */
+        public static int parseNumber(String arg, int start, int min, int max) {
+            String digits = arg.substring(start);
+            if (digits.matches("\\d{1,9}")) {
+                int number = Integer.parseInt(digits);
+                if (number >= min && number <= max) return number;
+            }
+            throw new IllegalArgumentException("invalid " + arg + ": expected a number from " + min + " to " + max);
+        }
+
+        public Options setThreads(int threads) { this.threads = threads; return this; }
+
+        public Options setStream(boolean stream, boolean onThread) {
+            this.stream = stream || onThread;
+            this.streamThread = onThread;
+            return this;
+        }
+
+        public Options setCheckOnly(boolean checkOnly) { this.checkOnly = checkOnly; return this; }
+
+        public Options setIncrementalDir(String dir) { this.incrementalDir = dir; return this; }
+
+        /**
+         * Report phases of each compilation. Compiling files prints the report, and writes it
+         * as JSON to file unless file is null. Compiling in memory keeps it in Result.getReport().
+         */
+        public Options setTimeReport(boolean timeReport, String file) {
+            this.timeReport = timeReport;
+            this.timeReportFile = file;
+            return this;
+        }
+
+        public Options setMem2Reg(boolean mem2reg) { this.mem2reg = mem2reg; return this; }
+
+        public Options setOptLevel(int optLevel) { this.optLevel = optLevel; return this; }
+
+        public int getThreads() { return threads; }
+
+        public boolean isCheckOnly() { return checkOnly; }
+    }
+
+    public static class Result {
+        private final String output;
+        private final String error;
+        private final String llvm;
+        private final String mips;
+        private final List<SysYException> diagnostics;
+        private final TimeReport report;
+
+        public Result(String output, String error, String llvm, String mips,
+                      List<SysYException> diagnostics, TimeReport report) {
+            this.output = output;
+            this.error = error;
+            this.llvm = llvm;
+            this.mips = mips;
+            this.diagnostics = diagnostics;
+            this.report = report;
+        }
+
+        /**
+         * @return text of the file output.txt, and error.txt below, as written by Compiler.
+         */
+        public String getOutput() { return output; }
+
+        public String getError() { return error; }
+
+        public String getLlvm() { return llvm; }
+
+        public String getMips() { return mips; }
+
+        /**
+         * @return errors of lexing and parsing, and of checking with -check, ordered by lines.
+         */
+        public List<SysYException> getDiagnostics() { return diagnostics; }
+
+        /**
+         * @return phases of the compilation with -ftime-report, or else null.
+         */
+        public TimeReport getReport() { return report; }
+    }
+
+    private final Options options;
+
+    public CompilerSession(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Compile source held in memory, named name, with all outputs kept in memory.
+     */
+    public Result compile(String name, String source) {
+        StringWriter output = new StringWriter(), error = new StringWriter(),
+                llvm = new StringWriter(), mips = new StringWriter();
+        Writer writer = new Writer(output, error, llvm, mips);
+        TimeReport report = newReport();
+        List<SysYException> diagnostics = compile(new Reader(name, source.getBytes(StandardCharsets.ISO_8859_1)),
+                writer, report);
+        return new Result(output.toString(), error.toString(), llvm.toString(), mips.toString(), diagnostics,
+                options.timeReport ? report : null);
+    }
+
+    /**
+     * Compile the file input into the files output, error, llvm and mips.
+     * @return errors as in Result.getDiagnostics().
+     */
+    public List<SysYException> compile(String input, String output, String error, String llvm, String mips) {
+        TimeReport report = newReport();
+        List<SysYException> diagnostics = compile(new Reader(input), new Writer(output, error, llvm, mips), report);
+        if (options.timeReport) {
+            System.err.print(report.toTable());
+            if (options.timeReportFile != null) {
+                try {
+                    Files.write(Paths.get(options.timeReportFile), report.toJson().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return diagnostics;
+    }
+
+    /**
+     * @return a report of phases with -ftime-report, or while phases are recorded by JFR, or else null.
+     */
+    private TimeReport newReport() {
+        return options.timeReport || Events.PHASE.isEnabled() ? new TimeReport() : null;
+    }
+
+    /**
+     * @param report phases to report to, or null.
+     */
+    private List<SysYException> compile(Reader reader, Writer writer, TimeReport report) {
+        Scanner scanner = new Scanner(new TokenTable(reader));
+        Module module = new Module();
+        AssemblyBuilder builder = new AssemblyBuilder(writer, module);
+        MIPSBuilder mipsBuilder = new MIPSBuilder(writer, module);
+        // Fingerprints are taken from all tokens, so they are not streamed.
+        boolean stream = options.stream && options.incrementalDir == null;
+        mipsBuilder.setReport(report);
+
+        // Streamed tokens are lexed while parsing, and reported with the parser.
+        if (report != null && !stream) report.begin("Tokenizer.tokenAnalyse");
+        Tokenizer tokenizer;
+        if (stream && options.streamThread) {
+            TokenPipe pipe = new TokenPipe(reader, scanner.getTokens());
+            tokenizer = pipe.getTokenizer();
+            scanner.pullFrom(pipe);
+            pipe.start();
+        } else if (stream) {
+            tokenizer = new Tokenizer(reader, scanner);
+            scanner.pullFrom(tokenizer);
+        } else {
+            tokenizer = new Tokenizer(reader, scanner);
+            tokenizer.tokenAnalyse(options.threads);
+        }
+
+        if (report != null) {
+            if (!stream) report.count("tokens", scanner.getTokens().size());
+            report.begin("Parser.syntaxAnalyse");
+        }
+        Parser parser = new Parser(scanner);
+        FlatTree tree = parser.syntaxAnalyse();
+        if (report != null) {
+            if (stream) report.count("tokens", scanner.getTokens().size());
+            report.count("AST nodes", tree.size());
+        }
+
+        if (options.checkOnly) {
+            if (report != null) report.begin("Checker.check");
+            Diagnostics semantic = new Diagnostics();
+            if (options.threads > 1) {
+                ForkJoinPool pool = new ForkJoinPool(options.threads);
+                try {
+                    new Checker(tree).check(semantic, pool);
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                new Checker(tree).check(new SymbolSysYTable(semantic));
+            }
+            List<SysYException> errors = Diagnostics.merge(tokenizer.errors, parser.errors, semantic);
+            if (report != null) {
+                report.count("errors", errors.size());
+                report.begin("Writer.close");
+            }
+            writer.writeErrors(errors);
+            writer.close();
+            if (report != null) report.end();
+            return errors;
+        }
+
+        PassManager passes = PassManager.forLevel(options.optLevel).setTimeReport(report);
+        if (options.mem2reg) passes.add(new Mem2Reg.Promote());
+
+        if (report != null && options.incrementalDir != null) report.begin("Fingerprints");
+        FunctionCache cache = null;
+        Map<String, String> keys = null, reusedLLVM = new HashMap<>(), reusedMIPS = new HashMap<>();
+        if (options.incrementalDir != null) {
+            cache = new FunctionCache(options.incrementalDir, FunctionCache.DEFAULT_MAX_ENTRIES);
+            keys = new Fingerprints(scanner.getTokens()).getFunctions();
+            // MIPS of a function differs by the passes run, so it is cached apart for each pipeline.
+            if (!passes.isEmpty()) keys.replaceAll((name, key) -> key + "." + passes.getDescription());
+            for (Map.Entry<String, String> key : keys.entrySet()) {
+                FunctionCache.Entry entry = cache.get(key.getValue());
+                if (entry != null) {
+                    reusedLLVM.put(key.getKey(), entry.getLlvm());
+                    reusedMIPS.put(key.getKey(), entry.getMips());
+                }
+            }
+            builder.reuse(reusedLLVM);
+            mipsBuilder.reuse(reusedMIPS);
+        }
+
+        if (report != null) report.begin("AssemblyBuilder.generateLLVM");
+        builder.generateLLVM(tree);
+        if (report != null) report.count("IR instructions", module.getInstCount());
+        // LLVM IR is written as generated, passes change the MIPS only.
+        passes.run(module);
+        mipsBuilder.genModule();
+
+        if (cache != null) {
+            if (report != null) report.begin("FunctionCache.put");
+            for (Map.Entry<String, String> key : keys.entrySet()) {
+                String name = key.getKey();
+                if (reusedLLVM.containsKey(name)) continue;
+                String llvmText = builder.getFunctionTexts().get(name), mipsText = mipsBuilder.getFunctionTexts().get(name);
+                if (llvmText != null && mipsText != null) cache.put(key.getValue(), llvmText, mipsText);
+            }
+            cache.close();
+            System.err.println("incremental: " + cache.getHits() + " functions reused, "
+                    + cache.getMisses() + " generated");
+        }
+
+        if (report != null) report.begin("Writer.close");
+        writer.close();
+        if (report != null) report.end();
+        return Diagnostics.merge(tokenizer.errors, parser.errors);
+    }
+}
@@ -2,50 +2,104 @@ package backend;
 
 import java.util.*;
 
+import midend.mir.BasicBlock;
+import midend.mir.Function;
+import midend.mir.Instruction;
 import midend.mir.Value;
 import midend.LiveAnalysis;
 import utils.Pair;
+import utils.inodelist.INode;
 import backend.Registers.*;
 
+/**
+ * Assigns registers to values of a function by coloring the graph of those held at
+ * once (Chaitin, with the optimistic select of Briggs). Values of low degree are
+ * removed first, and when none is left the value conflicting with the most others
+ * is removed as may be spilled; values are given registers in the reverse order,
+ * and those left with no register free are spilled, to be kept in memory.
+ */
 public class ColorGraph {
-    private final int K = 8;
+    private final int K;
 
     public static class ConflictGraph {
-        private final HashMap<Value, HashSet<Value>> graph = new HashMap<>();
-        private final HashMap<Value, Integer> degree = new HashMap<>();
-    
-        private void link(Pair<Value, Value> pair) {
-            Value f = pair.getFirst(), s = pair.getSecond();
-            if (!graph.containsKey(f)) graph.put(f, new HashSet<>());
+        private final HashMap<Value, HashSet<Value>> graph = new LinkedHashMap<>();
+        private final HashMap<Value, Integer> degree = new LinkedHashMap<>();
+
+        private void link(Value f, Value s) {
+            if (!graph.containsKey(f)) graph.put(f, new LinkedHashSet<>());
             graph.get(f).add(s);
-            if (!graph.containsKey(s)) graph.put(s, new HashSet<>());
+            if (!graph.containsKey(s)) graph.put(s, new LinkedHashSet<>());
             graph.get(s).add(f);
         }
-    
-        public static ConflictGraph getConflictGraph(LiveAnalysis liveAnalysis) {
+
+        public static ConflictGraph getConflictGraph(Function function, LiveAnalysis liveAnalysis) {
+            return getConflictGraph(function, liveAnalysis, null);
+        }
+
+        /**
+         * Link values defined by each instruction of liveAnalysis with those live out of
+         * it, as the two are then held at once, and params with each other. In SSA two
+         * values held at once are so where one of them is defined, but for params,
+         * which are all defined on entry.
+         * @param values the values to link, or null for all.
+         */
+        public static ConflictGraph getConflictGraph(Function function, LiveAnalysis liveAnalysis,
+                                                     Collection<Value> values) {
             ConflictGraph conflictGraph = new ConflictGraph();
-            Collection<HashSet<Value>> sets = liveAnalysis.getLiveIn().values();
-        
-            for (HashSet<Value> set : sets) {
-                for (Value value : set) {
-                    for (Value value2 : set) {
-                        if (!value.equals(value2)) {
-                            conflictGraph.link(Pair.of(value, value2));
-                        }
-                    }
+            boolean[] linked = new boolean[liveAnalysis.getValueCount()];
+            for (int number = 0; number < linked.length; number++) {
+                Value value = liveAnalysis.getValue(number);
+                linked[number] = values == null || values.contains(value);
+                if (linked[number]) conflictGraph.addValue(value);
+            }
+            if (values != null) {
+                for (Value value : values) conflictGraph.addValue(value);
+            }
+            List<Value> params = new ArrayList<>();
+            for (Value param : function.getParams()) {
+                if (values == null || values.contains(param)) params.add(param);
+            }
+            for (int i = 0; i < params.size(); i++) {
+                for (int j = i + 1; j < params.size(); j++) conflictGraph.link(params.get(i), params.get(j));
+            }
+            List<Instruction> insts = new ArrayList<>();
+            for (INode inst : function.getParamFetchList()) {
+                if (inst instanceof Instruction) insts.add((Instruction) inst);
+            }
+            for (BasicBlock block : function.getBBlockList()) {
+                for (INode inst : block.getInstList()) {
+                    if (inst instanceof Instruction) insts.add((Instruction) inst);
+                }
+            }
+            for (Instruction inst : insts) {
+                int result = liveAnalysis.numberOf(inst.getResult());
+                if (result < 0 || !linked[result]) continue;
+                int[] live = liveAnalysis.getLiveOut(inst);
+                if (live == null) continue;
+                for (int number : live) {
+                    if (number != result && linked[number])
+                        conflictGraph.link(inst.getResult(), liveAnalysis.getValue(number));
                 }
             }
-            for (Value value : conflictGraph.getDegree().keySet()) {
+            for (Value value : conflictGraph.getGraph().keySet()) {
                 conflictGraph.getDegree().put(value, conflictGraph.getGraph().get(value).size());
             }
             return conflictGraph;
         }
 
+        private void addValue(Value value) {
+            if (!graph.containsKey(value)) graph.put(value, new LinkedHashSet<>());
+        }
+
+        /**
+         * Remove value from the values left, lowering the degree of those it conflicts with.
+         */
         public void reduceDegree(Value value) {
+            degree.remove(value);
             for (Value val : graph.get(value)) {
-                degree.put(val, degree.get(val) - 1);
+                Integer count = degree.get(val);
+                if (count != null) degree.put(val, count - 1);
             }
-            degree.remove(value);
         }
 
         public HashMap<Value, HashSet<Value>> getGraph() { return graph; }
@@ -53,41 +107,91 @@ public class ColorGraph {
         public HashMap<Value, Integer> getDegree() { return degree; }
     }
 
-    private final ConflictGraph conflictGraph = ConflictGraph.getConflictGraph(null);
+    private final ConflictGraph conflictGraph;
+    private final List<Register> registers;
     private final Stack<Value> selectStack = new Stack<>();
     private final ArrayList<Value> spilledList = new ArrayList<>();
     private final ArrayList<Value> coloredList = new ArrayList<>();
-    private final HashMap<Value, Register> allocate = new HashMap<>();
+    private final HashMap<Value, Register> allocate = new LinkedHashMap<>();
+
+    /**
+     * @param values the values to color; conflicts with other values are left out.
+     * @param registers the registers to give them.
+     */
+    public ColorGraph(Function function, LiveAnalysis liveAnalysis, Collection<Value> values, List<Register> registers) {
+        conflictGraph = ConflictGraph.getConflictGraph(function, liveAnalysis, values);
+        this.registers = registers;
+        K = registers.size();
+    }
 
     public ColorGraph getColorGraph() {
         HashMap<Value, HashSet<Value>> graph = conflictGraph.getGraph();
         HashMap<Value, Integer> degree = conflictGraph.getDegree();
-        boolean find;
-        ArrayList<Register> registers = Registers.getGlobalRegisters();
+        // Values to remove at once, and the others by degree, most first; entries of
+        // the latter are left behind as degrees fall, and taken again with their degree.
+        ArrayDeque<Value> low = new ArrayDeque<>();
+        Map<Value, Integer> order = new IdentityHashMap<>();
+        PriorityQueue<Pair<Value, Integer>> high = new PriorityQueue<>((a, b) -> a.getSecond().equals(b.getSecond())
+                ? order.get(a.getFirst()) - order.get(b.getFirst()) : b.getSecond() - a.getSecond());
+        for (Map.Entry<Value, Integer> entry : degree.entrySet()) {
+            order.put(entry.getKey(), order.size());
+            if (entry.getValue() < K) low.add(entry.getKey());
+            else high.add(Pair.of(entry.getKey(), entry.getValue()));
+        }
         while (degree.size() > 0) {
-            find = false;
-            for (Value value : degree.keySet()) {
-                if (degree.get(value) < K) {
-                    selectStack.push(value);
-                    conflictGraph.reduceDegree(value);
-                    find = true;
-                    break;
+            Value value;
+            if (!low.isEmpty()) {
+                value = low.poll();
+                if (!degree.containsKey(value)) continue;
+            } else {
+                Pair<Value, Integer> top = high.poll();
+                value = top.getFirst();
+                Integer count = degree.get(value);
+                if (count == null) continue;
+                if (!count.equals(top.getSecond())) {
+                    high.add(Pair.of(value, count));
+                    continue;
                 }
             }
-            if (!find) {
-                for (Value value : degree.keySet()) {
-                    spilledList.add(value);
-                    conflictGraph.reduceDegree(value);
-                    break;
-                }
+            selectStack.push(value);
+            conflictGraph.reduceDegree(value);
+            for (Value val : graph.get(value)) {
+                Integer count = degree.get(val);
+                if (count != null && count == K - 1) low.add(val);
             }
         }
 
+        EnumSet<Register> used = EnumSet.noneOf(Register.class);
         while (!selectStack.empty()) {
-            Value color = selectStack.pop();
-            coloredList.add(color);
+            Value value = selectStack.pop();
+            used.clear();
+            for (Value val : graph.get(value)) {
+                Register register = allocate.get(val);
+                if (register != null) used.add(register);
+            }
+            Register free = null;
+            for (Register register : registers) {
+                if (!used.contains(register)) {
+                    free = register;
+                    break;
+                }
+            }
+            if (free == null) {
+                spilledList.add(value);
+            } else {
+                allocate.put(value, free);
+                coloredList.add(value);
+            }
         }
-        return null;
+        return this;
     }
 
-}
\ No newline at end of file
+    /**
+     * @return the register of each value colored, by getColorGraph().
+     */
+    public HashMap<Value, Register> getAllocate() { return allocate; }
+
+    public ArrayList<Value> getColoredList() { return coloredList; }
+
+    public ArrayList<Value> getSpilledList() { return spilledList; }
+}
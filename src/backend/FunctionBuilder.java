@@ -1,5 +1,6 @@
 package backend;
 
+import midend.LiveAnalysis;
 import midend.mir.*;
 import midend.mir.Instruction.*;
 import backend.MIPSCode.*;
@@ -13,8 +14,11 @@ import utils.inodelist.INode;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class FunctionBuilder {
     private final RegScheduler regScheduler = new RegScheduler();
@@ -29,6 +33,15 @@ public class FunctionBuilder {
      * Parse parameters.
      */
     private final LinkedHashMap<String, Pair<Register, Address>> paramPos;
+    /**
+     * Names of values promoted by midend.Mem2Reg, and the registers they are kept in
+     * throughout the function, given by ColorGraph from what is live at once. Other
+     * temps are never allocated these registers. Values given none are spilled to
+     * stack slots of their own, and loaded from there when read.
+     */
+    private final Set<String> homes = new HashSet<>();
+    private final HashMap<String, Register> homeRegs = new HashMap<>();
+    private int spilled = 0;
 
     private int stackSize;
     private int saveSize;
@@ -52,11 +65,12 @@ public class FunctionBuilder {
         // if (paramPos.containsKey(value.getName())) reg = paramPos.get(value.getName()).getFirst();
         /* global or temp register */
         if (value instanceof ConstantInt) return allocRegForSymOrInt(value);
+        Register reg = homeRegs.get(value.getName());
+        if (reg != null) return reg;
         Address address = findAddress(value);
-        Register reg;
         if (address != null) {
             reg = regScheduler.allocTemp(value);
-            curBBlock.addMipsCode(new LoadWordCode(reg, findAddress(value)));
+            curBBlock.addMipsCode(new LoadWordCode(reg, address));
             return reg;
         } else {
             return regScheduler.find(value);
@@ -75,7 +89,9 @@ public class FunctionBuilder {
         else return allocRegForSymOrInt(value);
     }
     private Register getRegForLeft(Value value) {
-        Register reg = regScheduler.find(value);
+        Register reg = homeRegs.get(value.getName());
+        if (reg != null) return reg;
+        reg = regScheduler.find(value);
         if (reg == null) return regScheduler.allocTemp(value);
         else return reg;
     }
@@ -85,8 +101,9 @@ public class FunctionBuilder {
         else return globalMem.getOrDefault(name, null);
     }
     private MIPSCode storeWord(Register res, Value value) {
+        if (homeRegs.containsKey(value.getName())) return new NopCode();
         Address address = null;
-        if (paramPos.containsKey(value.getName())) address = paramPos.get(value.getName()).getSecond();
+        if (paramPos.containsKey(value.getName()) && !homes.contains(value.getName())) address = paramPos.get(value.getName()).getSecond();
         if (address == null) address = findAddress(value);
         if (address != null) return new StoreWordCode(res, address);
         else return new NopCode();
@@ -101,6 +118,24 @@ public class FunctionBuilder {
         else total = mirFunction.getParams().size() * 4;
         // total = Math.max(0, mirFunction.getParams().size() - 4) * 4;
 
+        /* promoted values */
+        if (!mirFunction.getPromoted().isEmpty()) {
+            ColorGraph colorGraph = new ColorGraph(mirFunction, LiveAnalysis.of(mirFunction),
+                    mirFunction.getPromoted(), Registers.getHomeRegisters()).getColorGraph();
+            for (Map.Entry<Value, Register> entry : colorGraph.getAllocate().entrySet()) {
+                homeRegs.put(entry.getKey().getName(), entry.getValue());
+                regScheduler.reserve(entry.getValue());
+            }
+            spilled = colorGraph.getSpilledList().size();
+        }
+        for (Value value : mirFunction.getPromoted()) {
+            homes.add(value.getName());
+            if (!homeRegs.containsKey(value.getName()) && !mirFunction.getParams().contains(value)) {
+                total += 4;
+                map.put(value.getName(), 4);
+            }
+        }
+
         /* local var */
         for (BasicBlock block : mirFunction.getBBlockList()) {
             for (INode inst : block.getInstList()) {
@@ -125,7 +160,7 @@ public class FunctionBuilder {
                         address = new BaseAddress(Register.R29, new ImmNum(pos));
                         if (value instanceof ConstantInt) {
                             paramPos.put(name + "_param" + i, Pair.of(null, address));
-                        } else {
+                        } else if (!homes.contains(value.getName())) {
                             paramPos.put(value.getName(), Pair.of(null, address));
                         }
                     }
@@ -152,10 +187,6 @@ public class FunctionBuilder {
         }
         saveSize = total;
 
-        for (Map.Entry<String, Address> entry : stackMem.entrySet()) {
-            System.out.println(entry.getKey() + " : " + entry.getValue());
-        }
-
         return curFunction;
     }
 
@@ -171,7 +202,20 @@ public class FunctionBuilder {
         return size;
     }
 
-    public void secondPass() {
+    /**
+     * @return the count of promoted values given registers by firstPass().
+     */
+    public int getHomeRegCount() { return homeRegs.size(); }
+
+    /**
+     * @return the count of promoted values spilled to stack slots by firstPass().
+     */
+    public int getSpilledCount() { return spilled; }
+
+    /**
+     * @return the function lowered by firstPass(), now with its code.
+     */
+    public Function secondPass() {
         for (INode inst : mirFunction.getParamFetchList()) {
             if (inst instanceof MemoryInst) {
                 Value from = ((MemoryInst) inst).getFrom();
@@ -187,8 +231,15 @@ public class FunctionBuilder {
                         BinaryRegImmCode.toOp(BinaryOp.SUB), Register.R29, Register.R29, new ImmNum(stackSize)
                 ));
             }
+            if (mirFunction.getBBlockList().getBegin().equals(block)) {
+                for (Value param : mirFunction.getParams()) {
+                    Register reg = homeRegs.get(param.getName());
+                    if (reg != null) curBBlock.addMipsCode(new LoadWordCode(reg, stackMem.get(param.getName())));
+                }
+            }
             genBBlock(block);
         }
+        return curFunction;
     }
 
     private void genBBlock(BasicBlock block) {
@@ -218,6 +269,7 @@ public class FunctionBuilder {
 
         Instruction inst = block.getTerminator();
         if (inst instanceof BranchInst) {
+            if (((BranchInst) inst).getCond() == null) copyToPhis(block, ((BranchInst) inst).getThenBlock());
             pair = visit((BranchInst) inst);
         } else {
             pair = visit((RetInst) inst);
@@ -248,7 +300,64 @@ public class FunctionBuilder {
         Register to = getRegForLeft(inst.getTo());
         MIPSCode code = new MoveCode(to, from);
         // regScheduler.freeTemp(from);
-        return Pair.of(code, new NopCode());
+        return Pair.of(code, homes.contains(inst.getTo().getName()) ? storeWord(to, inst.getTo()) : new NopCode());
+    }
+
+    /**
+     * Copy the values the phis of successor take from block to them, all at once
+     * as phis may take each other. midend.Mem2Reg splits edges into blocks with phis
+     * from blocks branching elsewhere too, so only unconditional branches copy.
+     * A copy is made once no copy left reads where it writes; when those left read
+     * each other in a cycle, where one of them writes is first saved to a temp.
+     */
+    private void copyToPhis(BasicBlock block, BasicBlock successor) {
+        // Where each copy writes, a register or slot, and what it reads, also a constant.
+        List<Object> targets = new ArrayList<>(), sources = new ArrayList<>();
+        for (INode node : successor.getInstList()) {
+            if (!(node instanceof PhiInst)) break;
+            PhiInst phi = (PhiInst) node;
+            Value value = phi.getIncomings().get(block);
+            Object target = locationOf(phi.getResValue());
+            Object source = value instanceof ConstantInt ? value : locationOf(value);
+            if (source.equals(target)) continue;
+            targets.add(target);
+            sources.add(source);
+        }
+        while (!targets.isEmpty()) {
+            int next = -1;
+            for (int i = 0; i < targets.size() && next < 0; i++) {
+                if (!sources.contains(targets.get(i))) next = i;
+            }
+            if (next < 0) {
+                next = 0;
+                Object target = targets.get(0);
+                Register reg = regScheduler.allocTemp();
+                if (target instanceof Register) curBBlock.addMipsCode(new MoveCode(reg, (Register) target));
+                else curBBlock.addMipsCode(new LoadWordCode(reg, (Address) target));
+                for (int i = 0; i < sources.size(); i++) {
+                    if (sources.get(i).equals(target)) sources.set(i, reg);
+                }
+            }
+            Object target = targets.remove(next), source = sources.remove(next);
+            Register reg = target instanceof Register ? (Register) target : Register.R3;
+            if (source instanceof ConstantInt) {
+                curBBlock.addMipsCode(new LoadImmCode(reg, ImmNum.toImmNum((ConstantInt) source)));
+            } else if (source instanceof Register) {
+                if (target instanceof Register) curBBlock.addMipsCode(new MoveCode(reg, (Register) source));
+                else reg = (Register) source;
+            } else {
+                curBBlock.addMipsCode(new LoadWordCode(reg, (Address) source));
+            }
+            if (target instanceof Address) curBBlock.addMipsCode(new StoreWordCode(reg, (Address) target));
+        }
+    }
+
+    /**
+     * @return the register or the stack slot a promoted value is kept in.
+     */
+    private Object locationOf(Value value) {
+        Register reg = homeRegs.get(value.getName());
+        return reg != null ? reg : findAddress(value);
     }
 
     private Pair<MIPSCode, MIPSCode> visit(MemoryInst inst) {
@@ -355,13 +464,16 @@ public class FunctionBuilder {
 //                }
 //            }
         reg = getRegForRight(index);
+        // The offset is computed in place, but for the value of a variable, which is read again.
+        Register offset = homes.contains(index.getName()) ? regScheduler.allocTemp() : reg;
         if (innerType.isArrayType()) {
             curBBlock.addMipsCode(new BinaryRegImmCode(BinaryRegImmCode.toOp(BinaryOp.MUL),
-                    reg, reg, new ImmNum(((ArrayType) innerType).getSize() * 4)));
+                    offset, reg, new ImmNum(((ArrayType) innerType).getSize() * 4)));
         } else {
             curBBlock.addMipsCode(new BinaryRegImmCode(BinaryRegImmCode.toOp(BinaryOp.MUL),
-                    reg, reg, ImmNum.FourImm));
+                    offset, reg, ImmNum.FourImm));
         }
+        reg = offset;
         // System.out.println(inst + " : " + address);
         if (address instanceof BaseAddress) {
             /* local array */
@@ -414,10 +526,12 @@ public class FunctionBuilder {
         Function function = inst.getFunction();
         switch (function.getName()) {
             case "@getint": {
-                Register reg = getRegForRight(inst.getResValue());
+                Value value = inst.getResValue();
+                Register reg = homes.contains(value.getName()) ? getRegForLeft(value) : getRegForRight(value);
                 curBBlock.addMipsCode(new LoadImmCode(Register.R2, ImmNum.GETINT));
                 curBBlock.addMipsCode(new SysCallCode());
                 curBBlock.addMipsCode(new MoveCode(reg, Register.R2));
+                if (homes.contains(value.getName())) curBBlock.addMipsCode(storeWord(reg, value));
                 return true;
             }
             case "@putch": {
@@ -486,6 +600,10 @@ public class FunctionBuilder {
                 address = paramPos.get(name + "_param" + i).getSecond();
                 reg = allocRegForSymOrInt(value);
                 curBBlock.addMipsCode(new StoreWordCode(reg, address));
+            } else if (homes.contains(value.getName())) {
+                // Stored where the callee reads its param i, see firstPass().
+                reg = getRegForRight(value);
+                curBBlock.addMipsCode(new StoreWordCode(reg, new BaseAddress(Register.R29, new ImmNum(-4 * (i + 1)))));
             } else if (findAddress(value) == null
                 && (reg = regScheduler.find(value)) != null) {
                 address = paramPos.get(value.getName()).getSecond();
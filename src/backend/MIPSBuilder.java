@@ -6,6 +6,8 @@ import midend.mir.*;
 import midend.mir.Module;
 import backend.MIPSCode.*;
 import backend.Address.*;
+import utils.Events;
+import utils.TimeReport;
 import utils.Writer;
 import utils.inodelist.INode;
 
@@ -17,6 +19,9 @@ public class MIPSBuilder {
 
     private final ArrayList<FunctionBuilder> functionBuilders = new ArrayList<>();
     private final LinkedHashMap<String, Address> globalMem = new LinkedHashMap<>();
+    private Map<String, String> reused = Collections.emptyMap();
+    private final Map<String, String> functionTexts = new LinkedHashMap<>();
+    private TimeReport report = null;
 
     public MIPSBuilder(Writer writer, Module module) {
         mirModule = module;
@@ -24,6 +29,7 @@ public class MIPSBuilder {
     }
 
     public void genModule() {
+        if (report != null) report.begin("MIPSBuilder.genModule.firstPass");
         writer.setMipsBw();
         writer.writeln(".data:");
         for (GlobalVariable value : mirModule.getGlobalList()) {
@@ -40,29 +46,83 @@ public class MIPSBuilder {
 
 
         boolean isMain;
+        int homeRegs = 0, spilled = 0;
+        Map<String, Function> lirFunctions = new HashMap<>();
         for (Function function : mirModule.getFunctionList()) {
+            if (reused.containsKey(function.getName().substring(1))) continue;
             isMain = function.getName().equals("@main");
             FunctionBuilder functionBuilder = new FunctionBuilder(function, isMain, globalMem);
-            lirModule.addFunction(functionBuilder.firstPass(lirModule));
+            Events.Event event = Events.FUNCTION_LOWERING.begin();
+            Function lirFunction = functionBuilder.firstPass(lirModule);
+            if (event != null) event.set(0, function.getName()).set(1, "first").set(2, function.getInstCount()).commit();
+            lirModule.addFunction(lirFunction);
+            lirFunctions.put(lirFunction.getName(), lirFunction);
             functionBuilders.add(functionBuilder);
+            homeRegs += functionBuilder.getHomeRegCount();
+            spilled += functionBuilder.getSpilledCount();
+        }
+        if (report != null) {
+            report.count("functions", functionBuilders.size());
+            if (homeRegs + spilled > 0) {
+                report.count("promoted values in registers", homeRegs);
+                report.count("promoted values spilled", spilled);
+            }
+            report.begin("MIPSBuilder.genModule.secondPass");
         }
         for (FunctionBuilder functionBuilder : functionBuilders) {
-            functionBuilder.secondPass();
+            Events.Event event = Events.FUNCTION_LOWERING.begin();
+            Function lirFunction = functionBuilder.secondPass();
+            if (event != null) {
+                event.set(0, "@" + lirFunction.getName()).set(1, "second").set(2, lirFunction.getInstCount()).commit();
+            }
+        }
+
+        for (Function function : mirModule.getFunctionList()) {
+            String name = function.getName().substring(1);
+            String text = reused.containsKey(name) ? reused.get(name) : toMIPS(lirFunctions.get(name));
+            functionTexts.put(name, text);
+            writer.write(text);
+        }
+        if (report != null) {
+            report.end();
+            report.count("MIPS instructions", lirModule.getInstCount());
         }
+    }
+
+    /**
+     * Report the first pass, and the second pass with writing the code, to report.
+     */
+    public void setReport(TimeReport report) {
+        this.report = report;
+    }
+
+    /**
+     * Code of functions to write as given instead of generating it, keyed by
+     * function names. Such functions are not lowered.
+     */
+    public void reuse(Map<String, String> reused) {
+        this.reused = reused;
+    }
+
+    /**
+     * @return code written for each function, keyed by function names.
+     */
+    public Map<String, String> getFunctionTexts() { return functionTexts; }
 
-        for (Function function : lirModule.getFunctionList()) {
-            writer.writeln("Function_" + function.getName() + ":");
-            for (BasicBlock block : function.getBBlockList()) {
-                writer.writeln(block + ":");
-                for (INode iNode : block.getInstList()) {
-                    if (iNode instanceof NopCode) {
-                        iNode.remove();
-                    } else {
-                        writer.writeln("\t" + iNode);
-                    }
+    private static String toMIPS(Function function) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Function_").append(function.getName()).append(":\n");
+        for (BasicBlock block : function.getBBlockList()) {
+            builder.append(block).append(":\n");
+            for (INode iNode : block.getInstList()) {
+                if (iNode instanceof NopCode) {
+                    iNode.remove();
+                } else {
+                    builder.append('\t').append(iNode).append('\n');
                 }
             }
-            writer.writeln("");
         }
+        builder.append('\n');
+        return builder.toString();
     }
 }
@@ -1,8 +1,10 @@
 package backend;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import backend.Registers.Register;
 import midend.mir.Value;
@@ -13,6 +15,8 @@ public class RegScheduler {
     // private final ArrayList<Register> paramPool = new ArrayList<>(Registers.getParamRegisters());
     private final LinkedHashMap<Register, String> tempMap = new LinkedHashMap<>();
     private final LinkedHashMap<Register, String> globalMap = new LinkedHashMap<>();
+    /** Registers taken out of the temps, which are never allocated. */
+    private final Set<Register> reserved = new HashSet<>();
 
     public Register allocGlobal(Value value) {
         if (!globalPool.isEmpty()) {
@@ -49,10 +53,20 @@ public class RegScheduler {
     }
 
     public Register overflowTemp(Value value) {
-        tempPool.addAll(Registers.getTempRegisters());
+        for (Register register : Registers.getTempRegisters()) {
+            if (!reserved.contains(register)) tempPool.add(register);
+        }
         return tempPool.remove(0);
     }
 
+    /**
+     * Take register out of the temps for good, for a value held in it throughout.
+     */
+    public void reserve(Register register) {
+        reserved.add(register);
+        tempPool.remove(register);
+    }
+
 //    public Register allocParam(Value value) {
 //        if (!paramPool.isEmpty()) {
 //            Register r = paramPool.remove(0);
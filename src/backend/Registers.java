@@ -41,10 +41,17 @@ public class Registers {
         for (Register register : Register.values())
             if (register.isTemp() || register.isGlobal() || register.isParam()) add(register);
     }};
+    /** Registers for values kept in registers across blocks, taken out of the temps
+     *  of a function given any. They are saved around calls as the temps are.
+     */
+    private final static ArrayList<Register> homeRegisters = new ArrayList<Register>() {{
+        for (Register register : Register.values()) if (register.getName().matches("\\$s[0-7]")) add(register);
+    }};
     private final static ArrayList<Register> paramRegisters = new ArrayList<Register>() {{
         for (Register register : Register.values()) if (register.isParam()) add(register);
     }};
     public static ArrayList<Register> getGlobalRegisters() { return globalRegisters; }
     public static ArrayList<Register> getTempRegisters() { return tempRegisters; }
+    public static ArrayList<Register> getHomeRegisters() { return homeRegisters; }
     public static ArrayList<Register> getParamRegisters() { return paramRegisters; }
 }
@@ -0,0 +1,85 @@
+package benchmark;
+
+import frontend.Scanner;
+import frontend.Tokenizer;
+import frontend.token.TokenTable;
+import utils.Reader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Lexes a generated source of the given size (in MB, 32 by default) several
+ * times on the given number of threads (1 by default) and reports Tokenizer
+ * throughput in MB/s and tokens/s. With more than one thread the tokens and
+ * errors are first checked against those of the sequential path.
+ */
+public class LexerBenchmark {
+    private static final String SNIPPET =
+            "int func_#(int a, int b[], int c[][4]) {\n" +
+            "    /* multiline\n" +
+            "       comment */\n" +
+            "    int i = 0, sum = 12345;\n" +
+            "    while (i < a && b[i] != 0 || !c[0][i]) { // loop\n" +
+            "        sum = sum + b[i] * 2 - c[i][1] / 3 % 7;\n" +
+            "        if (sum >= 100000) break; else if (sum <= -100000) continue;\n" +
+            "        i = i + 1;\n" +
+            "    }\n" +
+            "    printf(\"sum = %d\\n\", sum);\n" +
+            "    return sum;\n" +
+            "}\n";
+
+    private static File generate(long bytes) throws IOException {
+        File file = File.createTempFile("lexer", ".sy");
+        file.deleteOnExit();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            long written = 0;
+            for (int i = 0; written < bytes; i++) {
+                String s = SNIPPET.replace("#", String.valueOf(i));
+                bw.write(s);
+                written += s.length();
+            }
+        }
+        return file;
+    }
+
+    private static Tokenizer run(File file, int threads) {
+        Reader reader = new Reader(file.getPath());
+        Tokenizer tokenizer = new Tokenizer(reader, new Scanner(new TokenTable(reader)));
+        tokenizer.tokenAnalyse(threads);
+        return tokenizer;
+    }
+
+    private static boolean same(Tokenizer expected, Tokenizer actual) {
+        TokenTable a = expected.getTokens(), b = actual.getTokens();
+        if (a.size() != b.size() || !expected.errors.toString().equals(actual.errors.toString())) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.getKind(i) != b.getKind(i) || a.getLine(i) != b.getLine(i) || a.getOffset(i) != b.getOffset(i)
+                    || a.getLength(i) != b.getLength(i) || a.getIntValue(i) != b.getIntValue(i)) return false;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 32;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        File file = generate(megabytes << 20);
+        double size = file.length() / (double) (1 << 20);
+        if (threads > 1 && !same(run(file, 1), run(file, threads))) {
+            System.out.println("Parallel tokens differ from sequential ones");
+            System.exit(1);
+        }
+        // warm up
+        for (int i = 0; i < 3; i++) run(file, threads);
+        System.out.printf("%6s %10s %12s %10s %12s%n", "run", "MB", "tokens", "MB/s", "Mtokens/s");
+        for (int i = 1; i <= 5; i++) {
+            long begin = System.nanoTime();
+            int count = run(file, threads).getTokens().size();
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            System.out.printf("%6d %10.1f %12d %10.1f %12.2f%n",
+                    i, size, count, size / seconds, count / seconds / 1e6);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package benchmark;
+
+import frontend.Parser;
+import frontend.Scanner;
+import frontend.Tokenizer;
+import frontend.token.TokenTable;
+import frontend.tree.FlatTree;
+import midend.Dataflow;
+import midend.FlowGraph;
+import midend.LiveAnalysis;
+import midend.LiveSlots;
+import midend.PassManager;
+import midend.mir.AssemblyBuilder;
+import midend.mir.BasicBlock;
+import midend.mir.ConstantInt;
+import midend.mir.Function;
+import midend.mir.GlobalValue;
+import midend.mir.Initial;
+import midend.mir.Instruction;
+import midend.mir.Instruction.PhiInst;
+import midend.mir.Module;
+import midend.mir.Value;
+import utils.Reader;
+import utils.Writer;
+import utils.inodelist.INode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks the values LiveAnalysis finds live into and out of each block against
+ * those of the algorithm it had before: a HashSet per block, all blocks swept
+ * from the last until none changes. That one only followed loads and stores, and
+ * never ended once a set grew, as its flag was not reset; here it follows every
+ * value LiveAnalysis does, with phis read at the end of their predecessors.
+ * LiveSlots of each block is checked too, solved for all functions at once on
+ * 4 threads against one after another.
+ * Functions are checked as generated and after the passes of -O2.
+ * Arguments are the source files to check, generated programs of loops by default.
+ */
+public class LivenessCheck {
+    private static class NullWriter extends java.io.Writer {
+        @Override
+        public void write(char[] buf, int off, int len) {}
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static Module generate(Reader reader) {
+        Scanner scanner = new Scanner(new TokenTable(reader));
+        new Tokenizer(reader, scanner).tokenAnalyse(1);
+        FlatTree tree = new Parser(scanner).syntaxAnalyse();
+        Module module = new Module();
+        NullWriter nullWriter = new NullWriter();
+        new AssemblyBuilder(new Writer(nullWriter, nullWriter, nullWriter, nullWriter), module).generateLLVM(tree);
+        return module;
+    }
+
+    /**
+     * A program of n nested loops, each reading variables of those around it.
+     */
+    private static String loops(int n) {
+        StringBuilder body = new StringBuilder("int f(int a, int b) {\n    int s = a;\n");
+        for (int i = 0; i < n; i++) body.append("    int v").append(i).append(" = b + ").append(i).append(";\n");
+        for (int i = 0; i < n; i++) {
+            body.append("    while (v").append(i).append(" < a) {\n")
+                    .append("        if (s % 3 == ").append(i % 3).append(") s = s + v").append(i).append(";\n")
+                    .append("        else v").append(i).append(" = v").append(i).append(" + s;\n");
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            body.append("        v").append(i).append(" = v").append(i).append(" + 1;\n    }\n")
+                    .append("    s = s - v").append(i).append(";\n");
+        }
+        return body.append("    return s;\n}\nint main() {\n    printf(\"%d\\n\", f(getint(), 1));\n    return 0;\n}\n")
+                .toString();
+    }
+
+    private static boolean isValue(Value value) {
+        return value != null && !(value instanceof ConstantInt) && !(value instanceof GlobalValue)
+                && !(value instanceof BasicBlock) && !(value instanceof Initial);
+    }
+
+    /**
+     * @return the values live into the blocks of function, then those live out of them.
+     */
+    private static List<Map<BasicBlock, Set<Value>>> reference(Function function) {
+        List<BasicBlock> blocks = new ArrayList<>();
+        for (BasicBlock block : function.getBBlockList()) blocks.add(block);
+        Map<BasicBlock, Set<Value>> use = new HashMap<>(), def = new HashMap<>(), phiUse = new HashMap<>();
+        Map<BasicBlock, Set<Value>> in = new HashMap<>(), out = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            use.put(block, new HashSet<>());
+            def.put(block, new HashSet<>());
+            phiUse.put(block, new HashSet<>());
+            in.put(block, new HashSet<>());
+            out.put(block, new HashSet<>());
+        }
+        for (BasicBlock block : blocks) {
+            List<Instruction> insts = new ArrayList<>();
+            if (block == function.getBBlockList().getBegin()) {
+                for (INode inst : function.getParamFetchList()) {
+                    if (inst instanceof Instruction) insts.add((Instruction) inst);
+                }
+            }
+            for (INode inst : block.getInstList()) {
+                if (inst instanceof Instruction) insts.add((Instruction) inst);
+            }
+            if (block.getTerminator() != null) insts.add(block.getTerminator());
+            for (Instruction inst : insts) {
+                if (inst instanceof PhiInst) {
+                    for (Map.Entry<BasicBlock, Value> incoming : ((PhiInst) inst).getIncomings().entrySet()) {
+                        if (isValue(incoming.getValue()) && phiUse.containsKey(incoming.getKey()))
+                            phiUse.get(incoming.getKey()).add(incoming.getValue());
+                    }
+                } else {
+                    for (Value operand : inst.getOperandValues()) {
+                        if (isValue(operand) && !def.get(block).contains(operand)) use.get(block).add(operand);
+                    }
+                }
+                if (isValue(inst.getResult())) def.get(block).add(inst.getResult());
+            }
+        }
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                Set<Value> live = new HashSet<>(phiUse.get(block));
+                for (BasicBlock successor : FlowGraph.successorsOf(block)) live.addAll(in.get(successor));
+                out.put(block, live);
+                Set<Value> liveIn = new HashSet<>(live);
+                liveIn.removeAll(def.get(block));
+                liveIn.addAll(use.get(block));
+                if (!liveIn.equals(in.get(block))) {
+                    in.put(block, liveIn);
+                    changed = true;
+                }
+            }
+        } while (changed);
+        List<Map<BasicBlock, Set<Value>>> sets = new ArrayList<>();
+        sets.add(in);
+        sets.add(out);
+        return sets;
+    }
+
+    /**
+     * @return the count of blocks of module whose sets differ from the reference, each
+     *  printed with what differs.
+     */
+    private static int check(String name, Module module, int[] blockCount) {
+        int mismatches = 0;
+        for (Function function : module.getFunctionList()) {
+            if (function.getBBlockList().isEmpty()) continue;
+            LiveAnalysis liveAnalysis = LiveAnalysis.of(function);
+            List<Map<BasicBlock, Set<Value>>> expected = reference(function);
+            Map<BasicBlock, HashSet<Value>> liveIn = liveAnalysis.getLiveIn(), liveOut = liveAnalysis.getLiveOut();
+            for (BasicBlock block : function.getBBlockList()) {
+                blockCount[0]++;
+                boolean sameIn = expected.get(0).get(block).equals(liveIn.get(block));
+                boolean sameOut = expected.get(1).get(block).equals(liveOut.get(block));
+                if (sameIn && sameOut) continue;
+                mismatches++;
+                System.out.printf("%s: %s %s: live in %s, expected %s; live out %s, expected %s%n", name,
+                        function.getName(), block.getName(), liveIn.get(block), expected.get(0).get(block),
+                        liveOut.get(block), expected.get(1).get(block));
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * @return the count of blocks of module whose LiveSlots differ when solved on pool.
+     */
+    private static int checkParallel(String name, Module module, ForkJoinPool pool) {
+        LiveSlots liveSlots = new LiveSlots();
+        // Solved on pool first, so that tasks build the flow graphs.
+        Map<Function, Dataflow.Result<Set<String>>> parallel = liveSlots.solve(module, pool);
+        Map<Function, Dataflow.Result<Set<String>>> sequential = liveSlots.solve(module, null);
+        int mismatches = 0;
+        for (Map.Entry<Function, Dataflow.Result<Set<String>>> result : sequential.entrySet()) {
+            Dataflow.Result<Set<String>> other = parallel.get(result.getKey());
+            for (BasicBlock block : result.getKey().getBBlockList()) {
+                Set<String> in = result.getValue().getIn(block), out = result.getValue().getOut(block);
+                if (in == null ? other.getIn(block) == null : in.equals(other.getIn(block))
+                        && out.equals(other.getOut(block))) continue;
+                mismatches++;
+                System.out.printf("%s: %s %s: slots live in %s, on threads %s%n", name,
+                        result.getKey().getName(), block.getName(), in, other.getIn(block));
+            }
+        }
+        return mismatches;
+    }
+
+    public static void main(String[] args) {
+        List<String> names = new ArrayList<>();
+        List<byte[]> sources = new ArrayList<>();
+        if (args.length == 0) {
+            for (int n : new int[]{1, 4, 16}) {
+                names.add("loops(" + n + ")");
+                sources.add(loops(n).getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+        for (String arg : args) {
+            names.add(arg);
+            sources.add(null);
+        }
+        int mismatches = 0;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        System.out.printf("%-32s %6s %10s %10s %10s%n", "program", "level", "blocks", "mismatches", "parallel");
+        for (int i = 0; i < names.size(); i++) {
+            for (int level : new int[]{0, 2}) {
+                String name = names.get(i);
+                Module module = generate(sources.get(i) == null ? new Reader(name) : new Reader(name, sources.get(i)));
+                PassManager.forLevel(level).run(module);
+                int[] blockCount = {0};
+                int count = check(name, module, blockCount), parallel = checkParallel(name, module, pool);
+                mismatches += count + parallel;
+                System.out.printf("%-32s %6s %10d %10d %10d%n", name, "-O" + level, blockCount[0], count, parallel);
+            }
+        }
+        pool.shutdown();
+        if (mismatches > 0) System.exit(1);
+    }
+}
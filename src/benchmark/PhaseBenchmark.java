@@ -0,0 +1,218 @@
+package benchmark;
+
+import backend.Address;
+import backend.FunctionBuilder;
+import backend.Label;
+import backend.Registers.Register;
+import frontend.Parser;
+import frontend.Scanner;
+import frontend.Tokenizer;
+import frontend.token.TokenTable;
+import frontend.tree.FlatTree;
+import midend.mir.AssemblyBuilder;
+import midend.mir.Function;
+import midend.mir.GlobalVariable;
+import midend.mir.Module;
+import utils.Reader;
+import utils.Writer;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Measures Tokenizer, Parser, AssemblyBuilder and FunctionBuilder each on its
+ * own, on generated programs of growing size: deep nesting, many functions, huge
+ * array initializers and long expressions. The input of a stage is made by the
+ * stages before it outside of the measurement. Reports throughput in operations
+ * and source KB per second, and bytes allocated per operation and per second,
+ * of the measuring thread.
+ * Arguments are the stages to run (all by default), as in "Parser,AssemblyBuilder",
+ * and the seconds of each of the 5 measured iterations (1 by default).
+ */
+public class PhaseBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+
+    /**
+     * A stage of the compiler, with how to make its input.
+     */
+    private interface Stage {
+        Object prepare(byte[] source);
+
+        void run(Object input);
+    }
+
+    private static class NullWriter extends java.io.Writer {
+        @Override
+        public void write(char[] buf, int off, int len) {}
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static Writer nullWriter() {
+        return new Writer(new NullWriter(), new NullWriter(), new NullWriter(), new NullWriter());
+    }
+
+    private static Scanner lex(byte[] source) {
+        Reader reader = new Reader("bench.sy", source);
+        Scanner scanner = new Scanner(new TokenTable(reader));
+        new Tokenizer(reader, scanner).tokenAnalyse(1);
+        return scanner;
+    }
+
+    private static FlatTree parse(byte[] source) {
+        return new Parser(lex(source)).syntaxAnalyse();
+    }
+
+    private static Module generate(byte[] source) {
+        Module module = new Module();
+        new AssemblyBuilder(nullWriter(), module).generateLLVM(parse(source));
+        return module;
+    }
+
+    private static final String[] STAGE_NAMES = {"Tokenizer", "Parser", "AssemblyBuilder", "FunctionBuilder"};
+
+    private static final Stage[] STAGES = {
+            new Stage() {
+                public Object prepare(byte[] source) { return source; }
+
+                public void run(Object input) { lex((byte[]) input); }
+            },
+            new Stage() {
+                public Object prepare(byte[] source) { return lex(source); }
+
+                public void run(Object input) { new Parser((Scanner) input).syntaxAnalyse(); }
+            },
+            new Stage() {
+                public Object prepare(byte[] source) { return parse(source); }
+
+                public void run(Object input) {
+                    new AssemblyBuilder(nullWriter(), new Module()).generateLLVM((FlatTree) input);
+                }
+            },
+            new Stage() {
+                public Object prepare(byte[] source) { return generate(source); }
+
+                /* The first and second passes of MIPSBuilder.genModule(), without writing the code. */
+                public void run(Object input) {
+                    Module module = (Module) input, lirModule = new Module();
+                    LinkedHashMap<String, Address> globalMem = new LinkedHashMap<>();
+                    for (GlobalVariable value : module.getGlobalList()) {
+                        String name = value.getName().replace("@", "");
+                        globalMem.put(value.getName(), new Address.LabelAddress(new Label(name), Register.R0));
+                    }
+                    List<FunctionBuilder> builders = new ArrayList<>();
+                    for (Function function : module.getFunctionList()) {
+                        FunctionBuilder builder = new FunctionBuilder(function, function.getName().equals("@main"), globalMem);
+                        lirModule.addFunction(builder.firstPass(lirModule));
+                        builders.add(builder);
+                    }
+                    for (FunctionBuilder builder : builders) builder.secondPass();
+                }
+            },
+    };
+
+    /**
+     * Programs of size n, each stressing one shape of code.
+     */
+    private static String nesting(int n) {
+        StringBuilder body = new StringBuilder("int main() {\n    int a, s = 0;\n    a = getint();\n");
+        for (int i = 0; i < n; i++) {
+            body.append(i % 2 == 0 ? "if (a > " + i + ") {\n" : "while (s < " + i + ") {\ns = s + 1;\n");
+        }
+        body.append("s = s + a;\n");
+        for (int i = n - 1; i >= 0; i--) body.append(i % 2 == 0 ? "}\n" : "break;\n}\n");
+        return body.append("    printf(\"%d\\n\", s);\n    return 0;\n}\n").toString();
+    }
+
+    private static String functions(int n) {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            program.append("int f").append(i).append("(int a, int b[]) {\n")
+                    .append("    int c = a * ").append(i).append(" + b[0];\n")
+                    .append("    if (c > 100) return c - ").append(i).append(";\n")
+                    .append("    return c").append(i > 0 ? " + f" + (i - 1) + "(a - 1, b)" : "").append(";\n}\n");
+        }
+        return program.append("int main() {\n    int a, b[1] = {1};\n    a = getint();\n    printf(\"%d\\n\", f")
+                .append(n - 1).append("(a, b));\n    return 0;\n}\n").toString();
+    }
+
+    private static String arrays(int n) {
+        StringBuilder global = new StringBuilder("const int g[" + n + "] = {"), local = new StringBuilder();
+        for (int i = 0; i < n; i++) global.append(i == 0 ? "" : ", ").append(i * 7 % 1000);
+        global.append("};\nint h[").append(n / 4).append("][4] = {");
+        for (int i = 0; i < n / 4; i++) global.append(i == 0 ? "" : ", ").append("{1, 2, 3, ").append(i).append("}");
+        for (int i = 0; i < n; i++) local.append(i == 0 ? "" : ", ").append("g[").append(i).append("]");
+        return global + "};\nint main() {\n    int l[" + n + "] = {" + local + "};\n"
+                + "    printf(\"%d\\n\", l[" + (n - 1) + "] + h[0][3]);\n    return 0;\n}\n";
+    }
+
+    private static String expressions(int n) {
+        String[] ops = {" + ", " - ", " * ", " / ", " % "};
+        StringBuilder exp = new StringBuilder("a");
+        for (int i = 1; i < n; i++) {
+            exp.append(ops[i % ops.length]).append(i % 3 == 0 ? "(b + " + i + ")" : i % 3 == 1 ? "-a" : String.valueOf(i));
+        }
+        return "int main() {\n    int a, b;\n    a = getint();\n    b = getint();\n    int c = " + exp + ";\n"
+                + "    if (c > a && c < b || !c) c = " + exp + ";\n"
+                + "    printf(\"%d\\n\", c);\n    return 0;\n}\n";
+    }
+
+    /**
+     * Run stage on input for about millis, or once at least.
+     * @return {operations, nanoseconds, allocated bytes}.
+     */
+    private static long[] iterate(Stage stage, byte[] source, long millis) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId(), operations = 0, nanos = 0, allocated = 0;
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        do {
+            Object input = stage.prepare(source);
+            long bytes = threads.getThreadAllocatedBytes(id), begin = System.nanoTime();
+            stage.run(input);
+            long end = System.nanoTime();
+            allocated += threads.getThreadAllocatedBytes(id) - bytes;
+            nanos += end - begin;
+            operations++;
+        } while (System.nanoTime() < deadline);
+        return new long[]{operations, nanos, allocated};
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? "," + args[0] + "," : null;
+        long millis = args.length > 1 ? (long) (Double.parseDouble(args[1]) * 1000) : 1000;
+        String[] programNames = {"nesting", "functions", "arrays", "expressions"};
+        int[][] sizes = {{16, 64, 256}, {10, 100, 1000}, {100, 1000, 10000}, {10, 100, 1000}};
+
+        System.out.printf("%-16s %-12s %6s %10s %12s %10s %12s %10s%n", "stage", "program", "n", "KB",
+                "ops/s", "KB/s", "alloc KB/op", "alloc MB/s");
+        for (int s = 0; s < STAGES.length; s++) {
+            if (filter != null && !filter.contains("," + STAGE_NAMES[s] + ",")) continue;
+            for (int p = 0; p < programNames.length; p++) {
+                for (int n : sizes[p]) {
+                    String program = p == 0 ? nesting(n) : p == 1 ? functions(n) : p == 2 ? arrays(n) : expressions(n);
+                    byte[] source = program.getBytes(StandardCharsets.ISO_8859_1);
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++) iterate(STAGES[s], source, millis);
+                    long operations = 0, nanos = 0, allocated = 0;
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        long[] result = iterate(STAGES[s], source, millis);
+                        operations += result[0];
+                        nanos += result[1];
+                        allocated += result[2];
+                    }
+                    double seconds = nanos / 1e9, kb = source.length / 1024.0;
+                    System.out.printf("%-16s %-12s %6d %10.1f %12.1f %10.1f %12.1f %10.1f%n", STAGE_NAMES[s],
+                            programNames[p], n, kb, operations / seconds, operations * kb / seconds,
+                            allocated / 1024.0 / operations, allocated / (1024.0 * 1024.0) / seconds);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package benchmark;
+
+import frontend.Scanner;
+import frontend.token.TokenTable;
+import frontend.token.Tokens.TokenKind;
+
+/**
+ * Feeds n tokens through Scanner the way Parser does (nextToken() plus a
+ * lookAheadToken() per step) and reports the cost per token.
+ * Linear scaling shows up as a flat ns/token column from 10K to 10M tokens.
+ */
+public class ScannerBenchmark {
+    private static final TokenKind[] SAMPLE = {
+            TokenKind.IDENT, TokenKind.ASSIGN, TokenKind.INTC,
+            TokenKind.PLUS, TokenKind.IDENT, TokenKind.SEMI
+    };
+
+    private static long run(int n) {
+        Scanner scanner = new Scanner(new TokenTable(null));
+        for (int i = 0; i < n; i++) {
+            scanner.saveToken(SAMPLE[i % SAMPLE.length], i / SAMPLE.length + 1, i, 1, 0);
+        }
+        long begin = System.nanoTime();
+        int count = 0;
+        while (!scanner.isEmpty()) {
+            scanner.nextToken();
+            if (scanner.lookAheadToken(1) >= 0) count++;
+        }
+        long time = System.nanoTime() - begin;
+        if (count != Math.max(n - 2, 0)) throw new IllegalStateException("lost tokens: " + count);
+        return time;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {10_000, 100_000, 1_000_000, 10_000_000};
+        // warm up
+        for (int i = 0; i < 5; i++) run(sizes[2]);
+        System.out.printf("%12s %14s %10s%n", "tokens", "total(ms)", "ns/token");
+        for (int n : sizes) {
+            long time = run(n);
+            System.out.printf("%12d %14.3f %10.2f%n", n, time / 1e6, (double) time / n);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package frontend;
+
+import frontend.exception.Diagnostics;
+import frontend.exception.SysYException.EKind;
+import frontend.symbolTable.SymbolSysYTable;
+import frontend.symbolTable.SymbolSysYTable.STKind;
+import frontend.tree.FlatTree;
+import frontend.tree.FlatTree.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Semantic checks of a FlatTree, on the nodes the parser emitted. Names are
+ * bound to the nodes defining them, and errors are reported to the table.
+ * The tree is only read, so that functions may be checked on several threads.
+ */
+public class Checker {
+    private enum ReturnKind {
+        VOID,
+        INT,
+        ONE_DIM,
+        TWO_DIM,
+        /** The expression is ill-typed or refers to a missing name. */
+        ERROR
+    }
+
+    private final FlatTree tree;
+
+    public Checker(FlatTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Check the compilation unit with table.
+     */
+    public void check(SymbolSysYTable table) {
+        for (int c = tree.firstChild(tree.root()); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            switch (tree.kind(c)) {
+                case DECL:
+                    checkDecl(table, c);
+                    break;
+                case INT_FUNC_DEF: case VOID_FUNC_DEF:
+                    declare(table, c, table.getErrors());
+                    checkBody(table, c);
+                    break;
+                case MAIN_FUNC_DEF:
+                    checkMain(table, c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The same as check(new SymbolSysYTable(errors)), but function bodies are
+     * checked as tasks on pool. Global declarations are checked and all functions
+     * are bound first; each body is then checked with a table of its own, which
+     * sees the global symbols bound up to its function. Errors of a task are kept
+     * apart and added to errors in the order a sequential check reports them.
+     */
+    public void check(Diagnostics errors, ForkJoinPool pool) {
+        SymbolSysYTable globals = new SymbolSysYTable(errors);
+        // Globals are not changed once tasks are submitted, so that tasks only read them.
+        List<Integer> bodies = new ArrayList<>();
+        List<Integer> visibles = new ArrayList<>();
+        List<Diagnostics> buffers = new ArrayList<>();
+        int mainFuncDef = FlatTree.NONE;
+        for (int c = tree.firstChild(tree.root()); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            switch (tree.kind(c)) {
+                case DECL:
+                    checkDecl(globals, c);
+                    break;
+                case INT_FUNC_DEF: case VOID_FUNC_DEF: {
+                    Diagnostics buffer = new Diagnostics();
+                    declare(globals, c, buffer);
+                    bodies.add(c);
+                    visibles.add(globals.getGlobalCount());
+                    buffers.add(buffer);
+                    break;
+                }
+                case MAIN_FUNC_DEF:
+                    mainFuncDef = c;
+                    break;
+            }
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < bodies.size(); i++) {
+            int funcDef = bodies.get(i);
+            SymbolSysYTable table = new SymbolSysYTable(globals, visibles.get(i), buffers.get(i));
+            tasks.add(pool.submit(() -> checkBody(table, funcDef)));
+        }
+        if (mainFuncDef != FlatTree.NONE) {
+            int main = mainFuncDef;
+            buffers.add(new Diagnostics());
+            SymbolSysYTable mainTable = new SymbolSysYTable(globals, globals.getGlobalCount(), buffers.get(bodies.size()));
+            tasks.add(pool.submit(() -> checkMain(mainTable, main)));
+        }
+        for (int i = 0, size = tasks.size(); i < size; i++) {
+            tasks.get(i).join();
+            errors.addAll(buffers.get(i), 0);
+        }
+    }
+
+    private void checkDecl(SymbolSysYTable table, int node) {
+        for (int def = tree.firstChild(node); def != FlatTree.NONE; def = tree.nextSibling(def)) checkDef(table, def);
+    }
+
+    /**
+     * Bind a variable or parameter, whose dimensions and initializer are not checked.
+     */
+    private void checkDef(SymbolSysYTable table, int node) {
+        if (!table.addSymbol(tree.payload(node), node)) table.report(EKind.b, tree.line(node));
+    }
+
+    /**
+     * Bind the function funcDef in table, reporting a redefinition to errors.
+     */
+    private void declare(SymbolSysYTable table, int funcDef, Diagnostics errors) {
+        if (!table.addSymbol(tree.payload(funcDef), funcDef)) errors.report(EKind.b, tree.line(funcDef));
+    }
+
+    /**
+     * Check parameters and body of the function funcDef, which is bound before.
+     */
+    private void checkBody(SymbolSysYTable table, int funcDef) {
+        table.pushScope(tree.kind(funcDef) == Kind.INT_FUNC_DEF ? STKind.INT_FUNC : STKind.VOID_FUNC);
+        for (int c = tree.firstChild(funcDef); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.BLOCK) checkBlock(table, c, false);
+            else checkDef(table, c);
+        }
+        table.popScope();
+    }
+
+    private void checkMain(SymbolSysYTable table, int mainFuncDef) {
+        table.pushScope(STKind.INT_FUNC);
+        checkBlock(table, tree.firstChild(mainFuncDef), false);
+        table.popScope();
+    }
+
+    private void checkBlock(SymbolSysYTable table, int block, boolean inLoop) {
+        // The kind of the enclosing scope, set if the block is a function body.
+        STKind kind = table.getKind();
+        table.pushScope();
+        int last = FlatTree.NONE;
+        for (int item = tree.firstChild(block); item != FlatTree.NONE; item = tree.nextSibling(item)) {
+            checkStatement(table, item, inLoop);
+            if (kind == STKind.VOID_FUNC && tree.kind(item) == Kind.RETURN && tree.firstChild(item) != FlatTree.NONE) {
+                table.report(EKind.f, tree.line(item));
+            }
+            last = item;
+        }
+        table.popScope();
+        if (kind == STKind.INT_FUNC && (last == FlatTree.NONE || tree.kind(last) != Kind.RETURN)) {
+            table.report(EKind.g, tree.line(block));
+        }
+    }
+
+    /**
+     * Check a statement or declaration. Conditions, the right of assignments and
+     * returned and printed expressions are not checked.
+     */
+    private void checkStatement(SymbolSysYTable table, int node, boolean inLoop) {
+        switch (tree.kind(node)) {
+            case DECL:
+                checkDecl(table, node);
+                break;
+            case BLOCK:
+                checkBlock(table, node, inLoop);
+                break;
+            case ASSIGN: {
+                int lVal = tree.firstChild(node);
+                checkExp(table, lVal);
+                Integer symbol = table.findSymbolInAll(tree.payload(lVal));
+                if (symbol != null && tree.kind(symbol) == Kind.CONST_DEF) table.report(EKind.h, tree.line(lVal));
+                break;
+            }
+            case IF:
+                for (int c = tree.nextSibling(tree.firstChild(node)); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+                    checkStatement(table, c, inLoop);
+                }
+                break;
+            case WHILE:
+                checkStatement(table, tree.child(node, 1), true);
+                break;
+            case BREAK: case CONTINUE:
+                if (!inLoop) table.report(EKind.m, tree.line(node));
+                break;
+            case EXP_STMT:
+                if (tree.firstChild(node) != FlatTree.NONE) checkExp(table, tree.firstChild(node));
+                break;
+            case PRINTF:
+                if (tree.string(node).split("%d").length - 1 != tree.childCount(node)) {
+                    table.report(EKind.l, tree.line(node));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Check names of an expression down through its operators; indexes and
+     * arguments are not checked.
+     */
+    private void checkExp(SymbolSysYTable table, int node) {
+        switch (tree.kind(node)) {
+            case LVAL:
+                if (table.findSymbolInAll(tree.payload(node)) == null) table.report(EKind.c, tree.line(node));
+                break;
+            case CALL:
+                checkCall(table, node);
+                break;
+            case UNARY: case BINARY:
+                for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) checkExp(table, c);
+                break;
+        }
+    }
+
+    private void checkCall(SymbolSysYTable table, int call) {
+        Integer funcDef = table.findSymbolInAll(tree.payload(call));
+        if (funcDef == null) {
+            table.report(EKind.c, tree.line(call));
+            return;
+        }
+        if (!isFunction(funcDef)) return;
+        // Parameters come before the body, the last child.
+        if (tree.childCount(funcDef) - 1 != tree.childCount(call)) {
+            table.report(EKind.d, tree.line(call));
+            return;
+        }
+        int param = tree.firstChild(funcDef);
+        for (int arg = tree.firstChild(call); arg != FlatTree.NONE; arg = tree.nextSibling(arg)) {
+            ReturnKind expected;
+            switch (dimensions(param)) {
+                case 2: expected = ReturnKind.TWO_DIM; break;
+                case 1: expected = ReturnKind.ONE_DIM; break;
+                default: expected = ReturnKind.INT; break;
+            }
+            ReturnKind kind = returnKind(table, arg);
+            // An argument is parsed as an Exp, which is ERROR unless int, as any AddExp.
+            if (kind != ReturnKind.INT) kind = ReturnKind.ERROR;
+            if (kind != expected) table.report(EKind.e, tree.line(call));
+            param = tree.nextSibling(param);
+        }
+    }
+
+    private ReturnKind returnKind(SymbolSysYTable table, int node) {
+        switch (tree.kind(node)) {
+            case INTC: case GETINT:
+                return ReturnKind.INT;
+            case LVAL: {
+                Integer symbol = table.findSymbolInAll(tree.payload(node));
+                if (symbol == null || isFunction(symbol)) return ReturnKind.ERROR;
+                switch (tree.childCount(node) - dimensions(symbol)) {
+                    case 0:
+                        return ReturnKind.INT;
+                    case 1:
+                        return ReturnKind.ONE_DIM;
+                    case 2:
+                        return ReturnKind.TWO_DIM;
+                    default:
+                        return ReturnKind.ERROR;
+                }
+            }
+            case CALL: {
+                Integer symbol = table.findSymbolInAll(tree.payload(node));
+                if (symbol == null || !isFunction(symbol)) return ReturnKind.ERROR;
+                return tree.kind(symbol) == Kind.INT_FUNC_DEF ? ReturnKind.INT : ReturnKind.VOID;
+            }
+            case UNARY:
+                return returnKind(table, tree.firstChild(node)) == ReturnKind.INT ? ReturnKind.INT : ReturnKind.ERROR;
+            case BINARY: {
+                int left = tree.firstChild(node);
+                ReturnKind leftRet = returnKind(table, left), rightRet = returnKind(table, tree.nextSibling(left));
+                return leftRet == ReturnKind.INT && rightRet == ReturnKind.INT ? ReturnKind.INT : ReturnKind.ERROR;
+            }
+            default:
+                return ReturnKind.ERROR;
+        }
+    }
+
+    private boolean isFunction(int symbol) {
+        return tree.kind(symbol) == Kind.INT_FUNC_DEF || tree.kind(symbol) == Kind.VOID_FUNC_DEF;
+    }
+
+    /**
+     * @return the dimensions a variable or parameter is defined with.
+     */
+    private int dimensions(int def) {
+        switch (tree.kind(def)) {
+            case PARAM:
+                return 0;
+            case ARRAY_PARAM:
+                return 1 + tree.childCount(def);
+            default: {
+                int dimensions = 0;
+                for (int c = tree.firstChild(def); c != FlatTree.NONE && tree.kind(c) != Kind.INIT; c = tree.nextSibling(c)) {
+                    dimensions++;
+                }
+                return dimensions;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package frontend;
+
+import frontend.token.TokenTable;
+import frontend.token.Tokens.TokenKind;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprints of the functions of a compilation unit, for reusing code of
+ * functions unchanged since a former compilation.
+ * The tokens are split into top-level items, global declarations and function
+ * definitions. The interface of an item is the whole of a declaration or the
+ * signature of a function, together with the interfaces of the items it refers
+ * to. A function is fingerprinted by its tokens and the interfaces of the items
+ * it refers to, which is all the code generated for it depends on. Spaces and
+ * comments are not part of a fingerprint.
+ */
+public class Fingerprints {
+    /** Part of every fingerprint. Change it whenever the code generated for a
+     *  function changes, so that code of a former version is not reused.
+     */
+    private static final String VERSION = "1";
+
+    private final TokenTable tokens;
+    private final MessageDigest digest;
+
+    /** First token, end of the signature and end of each item.
+     */
+    private final List<int[]> items = new ArrayList<>();
+
+    /** The item defining each top-level name, keyed by id of the name.
+     */
+    private final Map<Integer, Integer> owners = new HashMap<>();
+
+    /** Fingerprints of functions keyed by names, in the order of definitions.
+     */
+    private final LinkedHashMap<String, String> functions = new LinkedHashMap<>();
+
+    /**
+     * @param tokens all tokens of a compilation unit, none of them released.
+     */
+    public Fingerprints(TokenTable tokens) {
+        this.tokens = tokens;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        split();
+        String[] interfaces = new String[items.size()];
+        for (int k = 0, size = items.size(); k < size; k++) {
+            int[] item = items.get(k);
+            interfaces[k] = hash(item[0], item[1], k, interfaces);
+            if (item[1] != item[2]) {
+                String name = tokens.getKind(item[0] + 1) == TokenKind.MAIN ? "main" : tokens.getValue(item[0] + 1);
+                functions.put(name, hash(item[0], item[2], k, interfaces));
+            }
+        }
+    }
+
+    /**
+     * @return fingerprints of functions keyed by names, main included, in the order of definitions.
+     */
+    public Map<String, String> getFunctions() { return functions; }
+
+    private boolean isFuncDef(int index) {
+        int end = tokens.size();
+        if (index + 2 >= end) return false;
+        TokenKind type = tokens.getKind(index), name = tokens.getKind(index + 1);
+        return (type == TokenKind.INT || type == TokenKind.VOID)
+                && (name == TokenKind.IDENT || name == TokenKind.MAIN)
+                && tokens.getKind(index + 2) == TokenKind.LPAR;
+    }
+
+    /**
+     * Split tokens into items, and find the names each item defines.
+     */
+    private void split() {
+        int size = tokens.size();
+        for (int i = tokens.first(); i < size; ) {
+            int begin = i, k = items.size(), depth = 0;
+            if (isFuncDef(i)) {
+                define(i + 1, k);
+                while (i < size && tokens.getKind(i) != TokenKind.LBRACE) i++;
+                int signature = i;
+                do {
+                    TokenKind kind = tokens.getKind(i++);
+                    if (kind == TokenKind.LBRACE) depth++;
+                    else if (kind == TokenKind.RBRACE) depth--;
+                } while (depth > 0 && i < size);
+                items.add(new int[]{begin, signature, i});
+            } else {
+                TokenKind last = null;
+                while (i < size) {
+                    TokenKind kind = tokens.getKind(i++);
+                    if (depth == 0 && kind == TokenKind.IDENT && (last == TokenKind.INT || last == TokenKind.COMMA))
+                        define(i - 1, k);
+                    if (kind == TokenKind.LPAR || kind == TokenKind.LSQU || kind == TokenKind.LBRACE) depth++;
+                    else if (kind == TokenKind.RPAR || kind == TokenKind.RSQU || kind == TokenKind.RBRACE) depth--;
+                    else if (depth == 0 && kind == TokenKind.SEMI) break;
+                    last = kind;
+                }
+                items.add(new int[]{begin, i, i});
+            }
+        }
+    }
+
+    private void define(int index, int item) {
+        if (tokens.getKind(index) == TokenKind.IDENT) owners.putIfAbsent(tokens.getIntValue(index), item);
+    }
+
+    /**
+     * @return the fingerprint of tokens from begin to end of item k, and of the
+     *  interfaces of items before k they refer to.
+     */
+    private String hash(int begin, int end, int k, String[] interfaces) {
+        Set<Integer> refers = new LinkedHashSet<>();
+        digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+        for (int i = begin; i < end; i++) {
+            digest.update((byte) '\n');
+            digest.update(tokens.toString(i).getBytes(StandardCharsets.UTF_8));
+            if (tokens.getKind(i) == TokenKind.IDENT) {
+                Integer owner = owners.get(tokens.getIntValue(i));
+                if (owner != null && owner < k) refers.add(owner);
+            }
+        }
+        for (int owner : refers) {
+            digest.update((byte) '\n');
+            digest.update(interfaces[owner].getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+}
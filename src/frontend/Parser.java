@@ -1,9 +1,11 @@
 package frontend;
 
-import frontend.exception.SysYException;
+import frontend.exception.Diagnostics;
 import frontend.exception.SysYException.EKind;
+import frontend.token.TokenTable;
 import frontend.token.Tokens.*;
-import frontend.tree.SysYTree.*;
+import frontend.tree.FlatTree;
+import frontend.tree.FlatTree.Kind;
 import utils.Writer;
 
 import java.util.ArrayList;
@@ -13,55 +15,95 @@ public class Parser {
     private static final boolean debug = false;
 
     private final Scanner scanner;
+    private final TokenTable tokens;
     private Writer writer;
 
+    /** The tree nodes are emitted into.
+     */
+    private final FlatTree tree;
+
     /** If needed to print syntax.
      */
     private final boolean ifPrint;
 
     /** List of Errors.
      */
-    public final List<SysYException> errors = new ArrayList<>();
+    public final Diagnostics errors = new Diagnostics();
 
-    /** The frontend.token, set by nextToken().
+    /** The index of frontend.token, set by nextToken().
      */
-    private Token token;
+    private int token = -1;
 
-    /** The previous frontend.token, set by nextToken().
+    /** The index of previous frontend.token, set by nextToken().
      */
-    private Token prevToken;
+    private int prevToken = -1;
+
+    /** Whether the last token is consumed, after which nextToken() does nothing.
+     */
+    private boolean eof = false;
 
     public Parser(Scanner scanner) {
         this.scanner = scanner;
+        this.tokens = scanner.getTokens();
+        this.tree = new FlatTree(tokens.getNames(), capacity());
         ifPrint = false;
     }
 
     public Parser(Scanner scanner, Writer writer, boolean printTree) {
         this.scanner = scanner;
+        this.tokens = scanner.getTokens();
+        this.tree = new FlatTree(tokens.getNames(), capacity());
         this.writer = writer;
         this.ifPrint = printTree;
     }
 
     /**
      * Main function for syntax analysis.
+     * @return the tree parsed.
      */
-    public SysYCompilationUnit syntaxAnalyse() throws SysYException {
+    public FlatTree syntaxAnalyse() {
         nextToken();
-        return parseCompilationUnit();
+        parseCompilationUnit();
+        return tree;
     }
 
     /*----------------helper functions----------------*/
+    /** Nodes expected from the tokens lexed, none of them streamed yet: a node
+     *  takes a token or more but for a few, so that the tree need not grow.
+     */
+    private int capacity() {
+        return Math.max(tokens.size(), 64);
+    }
+
     private void nextToken() {
-        if (token != null && ifPrint) {
-            if (debug) System.out.println(token);
-            else writer.writeToken(token);
+        if (eof) return;
+        if (token >= 0 && ifPrint) {
+            if (debug) System.out.println(tokens.toString(token));
+            else writer.writeToken(tokens, token);
         }
         scanner.nextToken();
         prevToken = token;
         token = scanner.getToken();
+        eof = token == prevToken;
     }
     
-    private Token lookAhead(int pos) { return scanner.lookAheadToken(pos); }
+    private TokenKind kind() { return tokens.getKind(token); }
+
+    private int line() { return tokens.getLine(token); }
+
+    /** Kind of the pos-th token after frontend.token, or null if there is none.
+     */
+    private TokenKind lookAhead(int pos) {
+        int index = scanner.lookAheadToken(pos);
+        return index < 0 ? null : tokens.getKind(index);
+    }
+
+    /** Line of the pos-th token after frontend.token, or -1 if there is none.
+     */
+    private int lookAheadLine(int pos) {
+        int index = scanner.lookAheadToken(pos);
+        return index < 0 ? -1 : tokens.getLine(index);
+    }
 
     private void printTree(String out) {
         if (ifPrint) {
@@ -71,22 +113,48 @@ public class Parser {
     }
 
     /** If next input frontend.token matches given frontend.token, skip it, otherwise report
-     *  an error.
+     *  an error, and go on as if it were there.
+     *  @return whether it matches.
      */
-    public void accept(TokenKind tk) throws SysYException {
-        if (token.getTokenKind() == tk) {
+    public boolean accept(TokenKind tk) {
+        if (kind() == tk) {
             nextToken();
+            return true;
         } else if (tk == TokenKind.SEMI) {
-            throw new SysYException(EKind.i, prevToken.getLine());
+            errors.report(EKind.i, tokens.getLine(prevToken));
         } else if (tk == TokenKind.RPAR) {
-            throw new SysYException(EKind.j, prevToken.getLine());
+            errors.report(EKind.j, tokens.getLine(prevToken));
         } else if (tk == TokenKind.RSQU) {
-            throw new SysYException(EKind.k, prevToken.getLine());
+            errors.report(EKind.k, tokens.getLine(prevToken));
+        }
+        return false;
+    }
+
+    /**
+     * Panic mode, for a token no rule can start with: note the line, see
+     * Diagnostics.recover(), and skip tokens up to the end of the statement or the
+     * start of the next one.
+     */
+    private void recover() {
+        errors.recover(line());
+        nextToken();
+        while (!eof) {
+            switch (kind()) {
+                case SEMI:
+                    nextToken();
+                    return;
+                case LBRACE: case RBRACE:
+                case CONST: case INT: case VOID:
+                case IF: case WHILE: case BREAK: case CONTINUE: case RETURN: case PRINTF:
+                    return;
+                default:
+                    nextToken();
+            }
         }
     }
 
     private boolean isExp() {
-        switch (token.getTokenKind()) {
+        switch (kind()) {
             case LPAR:
             case INTC:
             case IDENT:
@@ -98,7 +166,7 @@ public class Parser {
     }
 
     private boolean isFuncType() {
-        switch (token.getTokenKind()) {
+        switch (kind()) {
             case INT: case VOID:
                 return true;
             default:
@@ -107,20 +175,11 @@ public class Parser {
     }
 
     private boolean isUnaryOp() {
-        return token.getTokenKind() == TokenKind.NOT || isAddOp();
-    }
-
-    private boolean isMulOp() {
-        switch (token.getTokenKind()) {
-            case STAR: case DIV: case MOD:
-                return true;
-            default:
-                return false;
-        }
+        return kind() == TokenKind.NOT || isAddOp();
     }
 
     private boolean isAddOp() {
-        switch (token.getTokenKind()) {
+        switch (kind()) {
             case PLUS: case MINUS:
                 return true;
             default:
@@ -128,62 +187,72 @@ public class Parser {
         }
     }
 
-    private boolean isRelOp() {
-        switch (token.getTokenKind()) {
-            case GRE: case GEQ:
-            case LSS: case LEQ:
-                return true;
-            default:
-                return false;
-        }
-    }
+    /** Levels of binary operators, loosest first. An operand of a level l operator
+     *  is a level l + 1 expression, and that of a MUL operator is a UnaryExp.
+     */
+    private static final int LOR = 0, LAND = 1, EQ = 2, REL = 3, ADD = 4, MUL = 5;
 
-    private boolean isEqOp() {
-        switch (token.getTokenKind()) {
+    private static final String[] LEVEL_NAMES = {
+            "<LOrExp>", "<LAndExp>", "<EqExp>", "<RelExp>", "<AddExp>", "<MulExp>"
+    };
+
+    /** Level of frontend.token as a binary operator, or -1 if it is not one.
+     */
+    private int level() {
+        switch (kind()) {
+            case OR:
+                return LOR;
+            case AND:
+                return LAND;
             case EQL: case NEQ:
-                return true;
+                return EQ;
+            case GRE: case GEQ:
+            case LSS: case LEQ:
+                return REL;
+            case PLUS: case MINUS:
+                return ADD;
+            case STAR: case DIV: case MOD:
+                return MUL;
             default:
-                return false;
+                return -1;
         }
     }
 
-    private boolean isLAndOp() {
-        return token.getTokenKind() == TokenKind.AND;
-    }
-
-    private boolean isLOrOp() {
-        return token.getTokenKind() == TokenKind.OR;
-    }
-
     /*----------------parse functions----------------*/
     /**
      * Begin parse compilation unit.
-     */
-    public SysYCompilationUnit parseCompilationUnit() throws SysYException {
-        SysYCompilationUnit top = new SysYCompilationUnit();
-        while (true) {
-            if (token.getTokenKind() == TokenKind.CONST) {
-                top.addDecl(constDecl());
-            } else if (token.getTokenKind() == TokenKind.VOID) {
-                top.addFuncDef(funcDef());
-            } else if (token.getTokenKind() == TokenKind.INT) {
-                if (lookAhead(0).getTokenKind() == TokenKind.MAIN) {
-                    top.setMainFuncDef(mainFuncDef());
+     * @return the root node.
+     */
+    public int parseCompilationUnit() {
+        int top = tree.add(Kind.COMP_UNIT, 0);
+        // Function definitions are linked after all declarations, as the grammar orders them.
+        List<Integer> funcDefs = new ArrayList<>();
+        int mainFuncDef = FlatTree.NONE;
+        while (!eof) {
+            if (kind() == TokenKind.CONST) {
+                tree.append(top, constDecl());
+            } else if (kind() == TokenKind.VOID) {
+                funcDefs.add(funcDef());
+            } else if (kind() == TokenKind.INT) {
+                if (lookAhead(0) == TokenKind.MAIN) {
+                    mainFuncDef = mainFuncDef();
                     break;
-                } else if (lookAhead(0).getTokenKind() == TokenKind.IDENT
-                            && lookAhead(1).getTokenKind() == TokenKind.LPAR) {
+                } else if (lookAhead(0) == TokenKind.IDENT
+                            && lookAhead(1) == TokenKind.LPAR) {
                     // func def with frontend.token == INT
-                    top.addFuncDef(funcDef());
-                } else if (lookAhead(0).getTokenKind() == TokenKind.IDENT) {
+                    funcDefs.add(funcDef());
+                } else if (lookAhead(0) == TokenKind.IDENT) {
                     // var declaration with frontend.token == INT
-                    top.addDecl(decl());
+                    tree.append(top, decl());
                 } else {
-                    throw new SysYException(EKind.o, token.getLine());
+                    recover();
                 }
             } else {
-                throw new SysYException(EKind.o, token.getLine());
+                recover();
             }
         }
+        for (int funcDef : funcDefs) tree.append(top, funcDef);
+        if (mainFuncDef != FlatTree.NONE) tree.append(top, mainFuncDef);
         printTree("<CompUnit>");
         return top;
     }
@@ -191,179 +260,153 @@ public class Parser {
     /**
      * Begin parse const declaration with tokenKind == "const".
      */
-    public SysYBlockItem constDecl() throws SysYException {
-        List<SysYSymbol> defs = new ArrayList<>();
+    public int constDecl() {
+        int decl = tree.add(Kind.DECL, 0);
         accept(TokenKind.CONST);
         accept(TokenKind.INT);
 
-        defs.add(constDef());
-        while (token.getTokenKind() == TokenKind.COMMA) {
+        tree.append(decl, constDef());
+        while (kind() == TokenKind.COMMA) {
             nextToken();
-            defs.add(constDef());
-        }
-        try {
-            accept(TokenKind.SEMI);
-        } catch (SysYException e) {
-            errors.add(e);
+            tree.append(decl, constDef());
         }
+        accept(TokenKind.SEMI);
         printTree("<ConstDecl>");
-        return new SysYDecl(true, defs);
+        return decl;
     }
 
     /**
      * Begin parse const definition with tokenKind == identifier.
      */
-    public SysYSymbol constDef() throws SysYException {
-        SysYIdentifier ident = ident();
-        int dimension = 0;
-        SysYExpression exp = null, exp2 = null, init = null;
-        SysYSymbol def;
+    public int constDef() {
+        int def = ident(Kind.CONST_DEF);
 
-        if (token.getTokenKind() == TokenKind.LSQU) {
+        if (kind() == TokenKind.LSQU) {
             nextToken();
-            exp = constExp();
-            dimension = 1;
-            try {
-                accept(TokenKind.RSQU);
-            } catch (SysYException e) {
-                errors.add(e);
-            }
-            if (token.getTokenKind() == TokenKind.LSQU) {
+            tree.append(def, constExp());
+            accept(TokenKind.RSQU);
+            if (kind() == TokenKind.LSQU) {
                 nextToken();
-                exp2 = constExp();
-                dimension = 2;
-                try {
-                    accept(TokenKind.RSQU);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
+                tree.append(def, constExp());
+                accept(TokenKind.RSQU);
             }
         }
 
-        if (token.getTokenKind() == TokenKind.ASSIGN) {
+        if (kind() == TokenKind.ASSIGN) {
             nextToken();
-            init = constInit();
+            tree.append(def, constInit());
         }
 
         printTree("<ConstDef>");
-        def = new SysYDef(true, ident, dimension, exp, exp2, init);
         return def;
     }
 
     /**
      * Begin parse const initializers with frontend.token after '='.
      */
-    public SysYExpression constInit() throws SysYException {
-        List<SysYExpression> expressions = new ArrayList<>();
-        if (token.getTokenKind() == TokenKind.LBRACE) {
+    public int constInit() {
+        int init = tree.add(Kind.INIT, 0);
+        if (kind() == TokenKind.LBRACE) {
             nextToken();
-            if (token.getTokenKind() != TokenKind.RBRACE) {
-                expressions.add(constInit());
-                while (token.getTokenKind() == TokenKind.COMMA) {
+            if (kind() != TokenKind.RBRACE) {
+                tree.append(init, constInit());
+                while (kind() == TokenKind.COMMA) {
                     nextToken();
-                    expressions.add(constInit());
+                    tree.append(init, constInit());
                 }
             }
             accept(TokenKind.RBRACE);
         } else {
-            expressions.add(constExp());
+            tree.append(init, constExp());
         }
         printTree("<ConstInitVal>");
-        return new SysYInit(true, expressions);
+        return init;
     }
 
     /**
      * Begin parse declaration with tokenKind == INT.
      */
-    public SysYDecl decl() throws SysYException {
-        List<SysYSymbol> defs = new ArrayList<>();
+    public int decl() {
+        int decl = tree.add(Kind.DECL, 0);
         accept(TokenKind.INT);
 
-        defs.add(def());
-        while (token.getTokenKind() == TokenKind.COMMA) {
+        tree.append(decl, def());
+        while (kind() == TokenKind.COMMA) {
             nextToken();
-            defs.add(def());
-        }
-        try {
-            accept(TokenKind.SEMI);
-        } catch (SysYException e) {
-            errors.add(e);
+            tree.append(decl, def());
         }
+        accept(TokenKind.SEMI);
         printTree("<VarDecl>");
-        return new SysYDecl(false, defs);
+        return decl;
     }
 
     /**
      * Begin parse definition with tokenKind == identifier.
      */
-    public SysYSymbol def() throws SysYException {
-        SysYIdentifier ident = ident();
-        int dimension = 0;
-        SysYExpression exp = null, exp2 = null, init = null;
-        SysYSymbol def;
+    public int def() {
+        int def = ident(Kind.VAR_DEF);
 
-        if (token.getTokenKind() == TokenKind.LSQU) {
+        if (kind() == TokenKind.LSQU) {
             nextToken();
-            exp = constExp();
-            dimension = 1;
-            try {
-                accept(TokenKind.RSQU);
-            } catch (SysYException e) {
-                errors.add(e);
-            }
-            if (token.getTokenKind() == TokenKind.LSQU) {
+            tree.append(def, constExp());
+            accept(TokenKind.RSQU);
+            if (kind() == TokenKind.LSQU) {
                 nextToken();
-                exp2 = constExp();
-                dimension = 2;
-                try {
-                    accept(TokenKind.RSQU);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
+                tree.append(def, constExp());
+                accept(TokenKind.RSQU);
             }
         }
 
-        if (token.getTokenKind() == TokenKind.ASSIGN) {
+        if (kind() == TokenKind.ASSIGN) {
             nextToken();
-            init = init();
+            tree.append(def, init());
         }
 
         printTree("<VarDef>");
-        def = new SysYDef(false, ident, dimension, exp, exp2, init);
         return def;
     }
 
     /**
      * Begin parse initializers with frontend.token after '='.
      */
-    public SysYExpression init() throws SysYException {
-        List<SysYExpression> expressions = new ArrayList<>();
-        if (token.getTokenKind() == TokenKind.LBRACE) {
+    public int init() {
+        int init = tree.add(Kind.INIT, 0);
+        if (kind() == TokenKind.LBRACE) {
             nextToken();
-            if (token.getTokenKind() != TokenKind.RBRACE) {
-                expressions.add(init());
-                while (token.getTokenKind() == TokenKind.COMMA) {
+            if (kind() != TokenKind.RBRACE) {
+                tree.append(init, init());
+                while (kind() == TokenKind.COMMA) {
                     nextToken();
-                    expressions.add(init());
+                    tree.append(init, init());
                 }
             }
             accept(TokenKind.RBRACE);
         } else {
-            expressions.add(exp());
+            tree.append(init, exp());
         }
         printTree("<InitVal>");
-        return new SysYInit(false, expressions);
+        return init;
     }
 
     /**
      * ident
+     * @return the id of the name, or -1 if it is missing.
+     */
+    private int name() {
+        int id = -1;
+        if (kind() == TokenKind.IDENT) {
+            id = tokens.getIntValue(token);
+            nextToken();
+        }
+        return id;
+    }
+
+    /**
+     * ident, as a node of kind named by it.
      */
-    public SysYIdentifier ident() {
-       Token ident = token;
-       if (token.getTokenKind() == TokenKind.IDENT) {
-           nextToken();
-       }
-       return new SysYIdentifier(ident);
+    public int ident(Kind kind) {
+        int line = line();
+        return tree.add(kind, name(), line);
     }
 
     /**
@@ -371,89 +414,66 @@ public class Parser {
      * @return true for return int value
      */
     public boolean funcType() {
-        Token type = token;
+        TokenKind type = kind();
         if (isFuncType()) {
             nextToken();
             printTree("<FuncType>");
         }
-        return type.getTokenKind() == TokenKind.INT;
+        return type == TokenKind.INT;
     }
 
     /**
      * Begin parse function definition with tokenKind == INT/VOID.
      */
-    public SysYFuncDef funcDef() throws SysYException {
-        boolean returnInt;
-        SysYIdentifier ident;
-        List<SysYSymbol> funcParams = new ArrayList<>();
-        SysYStatement block;
-        SysYFuncDef def;
-
-        returnInt = funcType();
-        ident = ident();
+    public int funcDef() {
+        boolean returnInt = funcType();
+        int def = ident(returnInt ? Kind.INT_FUNC_DEF : Kind.VOID_FUNC_DEF);
         accept(TokenKind.LPAR);
 
-        if (token.getTokenKind() == TokenKind.INT) {
-            funcParams = funcFParams();
+        if (kind() == TokenKind.INT) {
+            funcFParams(def);
         }
 
-        try {
-            accept(TokenKind.RPAR);
-        } catch (SysYException e) {
-            errors.add(e);
-        }
+        accept(TokenKind.RPAR);
 
 
-        block = block();
-        def = new SysYFuncDef(returnInt, ident, funcParams, block);
+        tree.append(def, block());
 
         printTree("<FuncDef>");
         return def;
     }
 
     /**
-     * Begin parse function fake parameters with tokenKind after '(', tokenKind == INT.
+     * Begin parse function fake parameters of def with tokenKind after '(', tokenKind == INT.
      */
-    public List<SysYSymbol> funcFParams() throws SysYException {
-        List<SysYSymbol> funcParams = new ArrayList<>();
-        funcParams.add(funcFParam());
-        while (token.getTokenKind() == TokenKind.COMMA) {
+    public void funcFParams(int def) {
+        tree.append(def, funcFParam());
+        while (kind() == TokenKind.COMMA) {
             nextToken();
-            funcParams.add(funcFParam());
+            tree.append(def, funcFParam());
         }
         printTree("<FuncFParams>");
-        return funcParams;
     }
 
     /**
      * Begin parse a function fake parameter with tokenKind == INT.
      */
-    public SysYSymbol funcFParam() throws SysYException {
-        SysYSymbol param;
+    public int funcFParam() {
+        int param;
         accept(TokenKind.INT);
-        SysYIdentifier ident = ident();
+        int line = line(), id = name();
 
-        if (token.getTokenKind() == TokenKind.LSQU) {
+        if (kind() == TokenKind.LSQU) {
+            param = tree.add(Kind.ARRAY_PARAM, id, line);
             nextToken();
-            try {
-                accept(TokenKind.RSQU);
-            } catch (SysYException e) {
-                errors.add(e);
-            }
-            if (token.getTokenKind() == TokenKind.LSQU) {
+            accept(TokenKind.RSQU);
+            if (kind() == TokenKind.LSQU) {
                 nextToken();
-                SysYExpression constExp = constExp();
-                try {
-                    accept(TokenKind.RSQU);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
-                param =  new SysYFuncParam(ident, 2, constExp);
-            } else {
-                param =  new SysYFuncParam(ident, 1);
+                tree.append(param, constExp());
+                accept(TokenKind.RSQU);
             }
         } else {
-            param = new SysYFuncParam(ident, 0);
+            param = tree.add(Kind.PARAM, id, line);
         }
 
         printTree("<FuncFParam>");
@@ -463,18 +483,15 @@ public class Parser {
     /**
      * Begin parse function definition with tokenKind == MAIN.
      */
-    public SysYMainFuncDef mainFuncDef() throws SysYException {
+    public int mainFuncDef() {
         accept(TokenKind.INT);
         accept(TokenKind.MAIN);
         accept(TokenKind.LPAR);
-        try {
-            accept(TokenKind.RPAR);
-        } catch (SysYException e) {
-            errors.add(e);
-        }
-        SysYStatement block = block();
+        accept(TokenKind.RPAR);
+        int def = tree.add(Kind.MAIN_FUNC_DEF, 0);
+        tree.append(def, block());
         printTree("<MainFuncDef>");
-        return new SysYMainFuncDef(block);
+        return def;
     }
 
     /*--------parse statements-------- */
@@ -489,11 +506,11 @@ public class Parser {
      * 		| 'return' [Exp] ';'
      * 		| LVal '=' 'getint' '(' ')' ';'
      * 		| 'printf' '(' FormatString { ',' Exp } ')' ';'
-     * @return SysYStatement
+     * @return the statement node, an empty EXP_STMT for a printf without its format string.
      */
-    public SysYStatement statement() throws SysYException {
-        SysYStatement statement = null;
-        switch (token.getTokenKind()) {
+    public int statement() {
+        int statement;
+        switch (kind()) {
             case LBRACE:{
                 statement = block();
                 break;
@@ -501,140 +518,107 @@ public class Parser {
             case IF: {
                 nextToken();
                 accept(TokenKind.LPAR);
-                SysYExpression cond = cond();
-                try {
-                    accept(TokenKind.RPAR);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
-                SysYStatement thenStmt = statement();
-                SysYStatement elseStmt = null;
-                if (token.getTokenKind() == TokenKind.ELSE) {
+                int cond = cond();
+                accept(TokenKind.RPAR);
+                int thenStmt = statement();
+                statement = tree.add(Kind.IF, 0);
+                tree.append(statement, cond);
+                tree.append(statement, thenStmt);
+                if (kind() == TokenKind.ELSE) {
                     nextToken();
-                    elseStmt = statement();
+                    tree.append(statement, statement());
                 }
-                statement = new SysYIf(cond, thenStmt, elseStmt);
                 break;
             }
             case WHILE: {
                 nextToken();
                 accept(TokenKind.LPAR);
-                SysYExpression cond = cond();
-                try {
-                    accept(TokenKind.RPAR);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
+                int cond = cond();
+                accept(TokenKind.RPAR);
 
-                SysYStatement thenStmt = statement();
+                int thenStmt = statement();
 
-                statement = new SysYWhile(cond, thenStmt);
+                statement = tree.add(Kind.WHILE, 0);
+                tree.append(statement, cond);
+                tree.append(statement, thenStmt);
                 break;
             }
             case CONTINUE: {
-                int line = token.getLine();
+                statement = tree.add(Kind.CONTINUE, 0, line());
 
                 nextToken();
-                try {
-                    accept(TokenKind.SEMI);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
-                statement = new SysYContinue(line);
+                accept(TokenKind.SEMI);
                 break;
             }
             case BREAK: {
-                int line = token.getLine();
+                statement = tree.add(Kind.BREAK, 0, line());
 
                 nextToken();
-                try {
-                    accept(TokenKind.SEMI);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
-                statement = new SysYBreak(line);
+                accept(TokenKind.SEMI);
                 break;
             }
             case RETURN: {
-                int line = token.getLine();
+                statement = tree.add(Kind.RETURN, 0, line());
 
                 nextToken();
-                SysYExpression result = isExp() ? exp() : null;
+                if (isExp()) tree.append(statement, exp());
 
-                try {
-                    accept(TokenKind.SEMI);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
-                statement = new SysYReturn(line, result);
+                accept(TokenKind.SEMI);
                 break;
             }
             case SEMI: {
                 nextToken();
-                statement = new SysYExpressionStatement();
+                statement = tree.add(Kind.EXP_STMT, 0);
                 break;
             }
             case PRINTF: {
-                int line = token.getLine();
+                int line = line();
 
                 nextToken();
                 accept(TokenKind.LPAR);
-                if (token.getTokenKind() == TokenKind.FORMATS) {
-                    String format = token.getValue();
+                if (kind() == TokenKind.FORMATS) {
+                    statement = tree.add(Kind.PRINTF, tree.addString(tokens.getValue(token)), line);
                     nextToken();
-                    List<SysYExpression> expressions = new ArrayList<>();
-                    while (token.getTokenKind() == TokenKind.COMMA) {
+                    while (kind() == TokenKind.COMMA) {
                         nextToken();
-                        expressions.add(exp());
+                        tree.append(statement, exp());
                     }
-
-                    statement = new SysYPrintf(line, format, expressions);
+                } else {
+                    statement = tree.add(Kind.EXP_STMT, 0);
                 }
 
-                try {
-                    accept(TokenKind.RPAR);
-                    accept(TokenKind.SEMI);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
+                if (accept(TokenKind.RPAR)) accept(TokenKind.SEMI);
                 break;
             }
             default: {
-                int pos = 0, line = token.getLine();
+                int pos = 0, line = line();
                 boolean flag = false;
-                Token temp;
-                while ((temp = lookAhead(pos)).getLine() == line) {
-                    pos++;
-                    if (temp.getTokenKind() == TokenKind.ASSIGN) {
+                while (lookAheadLine(pos) == line) {
+                    if (lookAhead(pos++) == TokenKind.ASSIGN) {
                         flag = true;
                         break;
                     }
                 }
 
                 if (flag) {
-                    SysYLVal lVal = (SysYLVal) lVal();
+                    int lVal = lVal();
                     accept(TokenKind.ASSIGN);
-                    if (token.getTokenKind() == TokenKind.GETINT) {
-                        statement = new SysYAssign(lVal, new SysYGetInt());
+                    statement = tree.add(Kind.ASSIGN, 0);
+                    tree.append(statement, lVal);
+                    if (kind() == TokenKind.GETINT) {
+                        tree.append(statement, tree.add(Kind.GETINT, 0));
                         accept(TokenKind.GETINT);
                         accept(TokenKind.LPAR);
-                        try {
-                            accept(TokenKind.RPAR);
-                        } catch (SysYException e) {
-                            errors.add(e);
-                        }
+                        accept(TokenKind.RPAR);
                     } else {
-                        statement = new SysYAssign(lVal, exp());
+                        tree.append(statement, exp());
                     }
                 } else {
-                    statement = new SysYExpressionStatement(exp());
+                    statement = tree.add(Kind.EXP_STMT, 0);
+                    tree.append(statement, exp());
                 }
 
-                try {
-                    accept(TokenKind.SEMI);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
+                accept(TokenKind.SEMI);
             }
         }
         printTree("<Stmt>");
@@ -644,29 +628,39 @@ public class Parser {
     /**
      * Begin parse block with frontend.token == '{'.
      */
-    public SysYStatement block() throws SysYException {
-        List<SysYBlockItem> statements = new ArrayList<>();
+    public int block() {
+        int block = tree.add(Kind.BLOCK, 0);
         accept(TokenKind.LBRACE);
 
-        while (token.getTokenKind() != TokenKind.RBRACE) {
-            if (token.getTokenKind() == TokenKind.CONST) {
-                statements.add(constDecl());
-            } else if (token.getTokenKind() == TokenKind.INT) {
-                statements.add(decl());
+        while (kind() != TokenKind.RBRACE && !eof) {
+            int start = token, reported = errors.size(), size = tree.size();
+            int item;
+            if (kind() == TokenKind.CONST) {
+                item = constDecl();
+            } else if (kind() == TokenKind.INT) {
+                item = decl();
             } else {
-                statements.add(statement());
+                item = statement();
+            }
+            if (token != start) {
+                tree.append(block, item);
+                continue;
             }
+            // Nothing was parsed, so what was reported on the way follows from the token skipped.
+            errors.rollback(reported);
+            tree.truncate(size);
+            recover();
         }
 
-        int endLine = token.getLine();
+        tree.setLine(block, line());
         accept(TokenKind.RBRACE);
         printTree("<Block>");
-        return new SysYBlock(statements, endLine);
+        return block;
     }
 
     /*--------parse expressions--------*/
-    public SysYExpression exp() throws SysYException {
-        SysYExpression expression = addExp();
+    public int exp() {
+        int expression = addExp();
         printTree("<Exp>");
         return expression;
     }
@@ -674,45 +668,31 @@ public class Parser {
     /**
      * LVal → Ident {'[' Exp ']'}
      */
-    public SysYExpression lVal() throws SysYException {
-        SysYIdentifier ident = ident();
-        SysYExpression exp;
+    public int lVal() {
+        int lVal = ident(Kind.LVAL);
 
-        if (token.getTokenKind() == TokenKind.LSQU) {
+        if (kind() == TokenKind.LSQU) {
             nextToken();
-            SysYExpression firstExp = exp();
-            try {
-                accept(TokenKind.RSQU);
-            } catch (SysYException e) {
-                errors.add(e);
-            }
-            if (token.getTokenKind() == TokenKind.LSQU) {
+            tree.append(lVal, exp());
+            accept(TokenKind.RSQU);
+            if (kind() == TokenKind.LSQU) {
                 nextToken();
-                SysYExpression secondExp = exp();
-                try {
-                    accept(TokenKind.RSQU);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
-                exp = new SysYLVal(ident, 2, firstExp, secondExp);
-            } else {
-                exp = new SysYLVal(ident, 1, firstExp);
+                tree.append(lVal, exp());
+                accept(TokenKind.RSQU);
             }
-        } else {
-            exp = new SysYLVal(ident, 0);
         }
         printTree("<LVal>");
-        return exp;
+        return lVal;
     }
 
     /**
      * Number → IntConst
      */
-    public SysYExpression number() {
-        int value = Integer.parseInt(token.getValue());
+    public int number() {
+        int value = tokens.getIntValue(token);
         nextToken();
         printTree("<Number>");
-        return new SysYIntC(value);
+        return tree.add(Kind.INTC, value);
     }
 
     /**
@@ -720,17 +700,13 @@ public class Parser {
      * 		| LVal
      * 		| Number
      */
-    public SysYExpression primaryExp() throws SysYException {
-        SysYExpression expression;
-        switch (token.getTokenKind()) {
+    public int primaryExp() {
+        int expression;
+        switch (kind()) {
             case LPAR: {
                 accept(TokenKind.LPAR);
                 expression = exp();
-                try {
-                    accept(TokenKind.RPAR);
-                } catch (SysYException e) {
-                    errors.add(e);
-                }
+                accept(TokenKind.RPAR);
                 break;
             }
             case INTC: {
@@ -747,24 +723,22 @@ public class Parser {
     }
 
     /**
-     * FuncRParams → Exp { ',' Exp }
+     * FuncRParams → Exp { ',' Exp }, as the arguments of call.
      */
-    public List<SysYExpression> funcRParams() throws SysYException {
-        List<SysYExpression> funcParams = new ArrayList<>();
-        funcParams.add(exp());
-        while (token.getTokenKind() == TokenKind.COMMA) {
+    public void funcRParams(int call) {
+        tree.append(call, exp());
+        while (kind() == TokenKind.COMMA) {
             nextToken();
-            funcParams.add(exp());
+            tree.append(call, exp());
         }
         printTree("<FuncRParams>");
-        return funcParams;
     }
 
     /**
      * UnaryOp → '+' | '−' | '!'
      */
-    public Token unaryOp() {
-        Token op = token;
+    public TokenKind unaryOp() {
+        TokenKind op = kind();
         if (isUnaryOp()) nextToken();
         printTree("<UnaryOp>");
         return op;
@@ -775,145 +749,131 @@ public class Parser {
      * 		| Ident '(' [FuncRParams] ')'
      * 		| UnaryOp UnaryExp
      */
-    public SysYExpression unaryExp() throws SysYException {
-        SysYExpression res;
-        if (isUnaryOp()) {
-            Token op = unaryOp();
-            SysYExpression exp = unaryExp();
-            res = new SysYUnaryExp(op, exp);
-        } else if (token.getTokenKind() == TokenKind.IDENT && lookAhead(0).getTokenKind() == TokenKind.LPAR) {
-            SysYIdentifier ident = ident();
+    public int unaryExp() {
+        // a run of unary operators is read in a loop rather than by recursion
+        List<TokenKind> ops = null;
+        while (isUnaryOp()) {
+            if (ops == null) ops = new ArrayList<>();
+            ops.add(unaryOp());
+        }
+        int res;
+        if (kind() == TokenKind.IDENT && lookAhead(0) == TokenKind.LPAR) {
+            res = ident(Kind.CALL);
             accept(TokenKind.LPAR);
-            List<SysYExpression> funcRParams = new ArrayList<>();
 
             if (isExp()) {
-                funcRParams = funcRParams();
+                funcRParams(res);
             }
 
-            try {
-                accept(TokenKind.RPAR);
-            } catch (SysYException e) {
-                errors.add(e);
-            }
-            res = new SysYFuncCall(ident, funcRParams);
+            accept(TokenKind.RPAR);
         } else {
             res = primaryExp();
         }
         printTree("<UnaryExp>");
+        if (ops != null) {
+            for (int i = ops.size() - 1; i >= 0; i--) {
+                int unary = tree.add(Kind.UNARY, ops.get(i).ordinal());
+                tree.append(unary, res);
+                res = unary;
+                printTree("<UnaryExp>");
+            }
+        }
         return res;
     }
 
     /**
-     * MulExp → UnaryExp {('*' | '/' | '%') UnaryExp}
-     */
-    public SysYExpression mulExp() throws SysYException {
-        SysYExpression temp = unaryExp();
-        SysYExpression res = new SysYMulExp(temp);
-        printTree("<MulExp>");
-        while (isMulOp()) {
-            Token prevToken = token;
+     * Parse a level expression by precedence climbing: an operand is read once,
+     * then wrapped up level by level only as far as the next operator needs.
+     * The productions printed are the same as those of a recursive descent
+     * through every level, with one frame per operator level actually used;
+     * only operators are made nodes.
+     */
+    private int binaryExp(int level) {
+        int res = unaryExp();
+        int cur = MUL;
+        res = wrap(cur, res);
+        while (true) {
+            int opLevel = level();
+            if (opLevel < level) break;
+            while (cur > opLevel) res = wrap(--cur, res);
+            TokenKind op = kind();
             nextToken();
-            temp = unaryExp();
-            res = new SysYMulExp(prevToken, res, temp);
-            printTree("<MulExp>");
+            int right = opLevel == MUL ? unaryExp() : binaryExp(opLevel + 1);
+            res = combine(opLevel, op, res, right);
         }
+        while (cur > level) res = wrap(--cur, res);
         return res;
     }
 
     /**
-     * AddExp → MulExp {('+' | '−') MulExp}
+     * @return exp as a level expression without operator, which is exp itself.
      */
-    public SysYExpression addExp() throws SysYException {
-        SysYExpression temp = mulExp();
-        SysYExpression res = new SysYAddExp(temp);
-        printTree("<AddExp>");
-        while (isAddOp()) {
-            Token prevToken = token;
-            nextToken();
-            temp = mulExp();
-            res = new SysYAddExp(prevToken, res, temp);
-            printTree("<AddExp>");
-        }
+    private int wrap(int level, int exp) {
+        printTree(LEVEL_NAMES[level]);
+        return exp;
+    }
+
+    private int combine(int level, TokenKind op, int left, int right) {
+        int res = tree.add(Kind.BINARY, op.ordinal());
+        tree.append(res, left);
+        tree.append(res, right);
+        printTree(LEVEL_NAMES[level]);
         return res;
     }
 
+    /**
+     * MulExp → UnaryExp {('*' | '/' | '%') UnaryExp}
+     */
+    public int mulExp() {
+        return binaryExp(MUL);
+    }
+
+    /**
+     * AddExp → MulExp {('+' | '−') MulExp}
+     */
+    public int addExp() {
+        return binaryExp(ADD);
+    }
+
     /**
      * RelExp → AddExp {('<' | '>' | '<=' | '>=') AddExp}
      */
-    public SysYExpression relExp() throws SysYException {
-        SysYExpression temp = addExp();
-        SysYExpression res = new SysYRelExp(temp);
-        printTree("<RelExp>");
-        while (isRelOp()) {
-            Token prevToken = token;
-            nextToken();
-            temp = addExp();
-            res = new SysYRelExp(prevToken, res, temp);
-            printTree("<RelExp>");
-        }
-        return res;
+    public int relExp() {
+        return binaryExp(REL);
     }
 
     /**
      * EqExp → RelExp {('==' | '!=') RelExp}
      */
-    public SysYExpression eqExp() throws SysYException {
-        SysYExpression temp = relExp();
-        SysYExpression res = new SysYEqExp(temp);
-        printTree("<EqExp>");
-        while (isEqOp()) {
-            Token prevToken = token;
-            nextToken();
-            temp = relExp();
-            res = new SysYEqExp(prevToken, res, temp);
-            printTree("<EqExp>");
-        }
-        return res;
+    public int eqExp() {
+        return binaryExp(EQ);
     }
 
     /**
      * LAndExp → EqExp {'&&' EqExp}
      */
-    public SysYExpression lAndExp() throws SysYException {
-        SysYExpression temp = eqExp();
-        SysYExpression res = new SysYLAndExp(temp);
-        printTree("<LAndExp>");
-        while (isLAndOp()) {
-            nextToken();
-            temp = eqExp();
-            res = new SysYLAndExp(res, temp);
-            printTree("<LAndExp>");
-        }
-        return res;
+    public int lAndExp() {
+        return binaryExp(LAND);
     }
 
     /**
      * LOrExp → LAndExp {'||' LAndExp}
      */
-    public SysYExpression lOrExp() throws SysYException {
-        SysYExpression temp = lAndExp();
-        SysYExpression res = new SysYLOrExp(temp);
-        printTree("<LOrExp>");
-        while (isLOrOp()) {
-            nextToken();
-            temp = lAndExp();
-            res = new SysYLOrExp(res, temp);
-            printTree("<LOrExp>");
-        }
-        return res;
+    public int lOrExp() {
+        return binaryExp(LOR);
     }
 
     /**
      * Cond → LOrExp
      */
-    public SysYExpression cond() throws SysYException {
-        SysYExpression cond = lOrExp();
+    public int cond() {
+        int cond = lOrExp();
         printTree("<Cond>");
-        return new SysYCond(cond);
+        return cond;
     }
 
-    public SysYExpression constExp() throws SysYException {
-        SysYExpression expression = addExp();
+    public int constExp() {
+        int expression = addExp();
         printTree("<ConstExp>");
         return expression;
     }
@@ -1,35 +1,81 @@
 package frontend;
 
-import frontend.token.Tokens.Token;
-
-import java.util.ArrayList;
+import frontend.token.TokenTable;
+import frontend.token.Tokens.TokenKind;
 
 public class Scanner {
-    /** A list of all tokens.
+    /** Where tokens come from when they are pulled on demand, see pullFrom().
      */
-    private final ArrayList<Token> tokens = new ArrayList<>();
+    public interface Source {
+        /**
+         * Add more tokens to the table of the scanner, if any.
+         * @return false if there are no more tokens.
+         */
+        boolean fill();
+    }
 
-    /** The frontend.token, set by nextToken().
+    /** A table of all tokens.
      */
-    private Token token;
+    private final TokenTable tokens;
 
-    public Scanner() {}
+    /** The index of the next token in tokens, advanced by nextToken().
+     *  Consumed tokens are not shifted out one by one, so advancing is O(1).
+     */
+    private int cursor = 0;
 
-    public boolean isEmpty() { return tokens.isEmpty(); }
+    /** The index of frontend.token, set by nextToken(), or -1 before the first one.
+     */
+    private int token = -1;
 
-    public void saveToken(Token token) { tokens.add(token); }
+    /** The source tokens are pulled from, or null if all tokens are saved before parsing.
+     */
+    private Source source = null;
+
+    public Scanner(TokenTable tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Pull tokens from source only when they are asked for, instead of reading
+     * a table filled beforehand. Only the current, previous and lookahead tokens
+     * are then kept in the table.
+     */
+    public void pullFrom(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @return false if there are less than count tokens after frontend.token.
+     */
+    private boolean pull(int count) {
+        while (tokens.size() - cursor < count) {
+            if (source == null || !source.fill()) return false;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() { return !pull(1); }
+
+    public void saveToken(TokenKind kind, int line, int offset, int length, int value) {
+        tokens.add(kind, line, offset, length, value);
+    }
 
     public void nextToken() {
-        if (!tokens.isEmpty()) token = tokens.remove(0);
+        if (pull(1)) {
+            token = cursor++;
+            // The previous token is still read for error lines.
+            if (source != null) tokens.release(token - 1);
+        }
     }
 
-    public Token lookAheadToken(int pos) {
-        if (tokens.size() > pos) {
-            return tokens.get(pos);
-        } else return null;
+    /**
+     * @return the index of the pos-th token after frontend.token, or -1 if there is none.
+     */
+    public int lookAheadToken(int pos) {
+        return pull(pos + 1) ? cursor + pos : -1;
     }
 
-    public Token getToken() { return token; }
+    public int getToken() { return token; }
 
-    public ArrayList<Token> getTokens() { return tokens; }
+    public TokenTable getTokens() { return tokens; }
 }
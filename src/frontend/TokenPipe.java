@@ -0,0 +1,103 @@
+package frontend;
+
+import frontend.token.TokenTable;
+import utils.Reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Lexes on a thread of its own and passes tokens to the scanner in batches
+ * through a bounded queue, so that lexing runs ahead of parsing by at most
+ * CAPACITY batches.
+ */
+public class TokenPipe implements Scanner.Source, Runnable {
+    private static final int BATCH = 512;
+    private static final int CAPACITY = 16;
+
+    /** Put into the queue after the last batch.
+     */
+    private static final TokenTable END = new TokenTable(null);
+
+    private final Tokenizer tokenizer;
+    private final TokenTable tokens;
+    private final BlockingQueue<TokenTable> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private boolean done = false;
+    /** What the thread failed with, if it did or was interrupted, set before END is put, so
+     * seen once END is taken.
+     */
+    private Throwable failure = null;
+
+    /**
+     * @param tokens the table of the scanner tokens are passed to.
+     */
+    public TokenPipe(Reader reader, TokenTable tokens) {
+        this.tokens = tokens;
+        this.tokenizer = new Tokenizer(reader.region(0, reader.size()), new Scanner(new TokenTable(reader, tokens.getNames())));
+    }
+
+    /**
+     * The tokenizer on the thread. Its errors are complete once all tokens are pulled.
+     */
+    public Tokenizer getTokenizer() { return tokenizer; }
+
+    public void start() {
+        Thread thread = new Thread(this, "tokenizer");
+        // Parsing may stop before all tokens are taken.
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        TokenTable own = tokenizer.getTokens();
+        try {
+            boolean more;
+            do {
+                more = tokenizer.lexLine();
+                if (own.size() - own.first() >= BATCH || !more && own.size() > own.first()) {
+                    TokenTable batch = new TokenTable(null, own.getNames());
+                    batch.append(own, 0);
+                    own.clear();
+                    queue.put(batch);
+                }
+            } while (more);
+        } catch (InterruptedException | RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            // The parser waits for END however lexing ended, so it is put even if interrupted.
+            boolean interrupted = Thread.interrupted() || failure instanceof InterruptedException;
+            while (true) {
+                try {
+                    queue.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if lexing failed on the thread, caused by what it failed
+     *  with, or if the parsing thread was interrupted, which is then interrupted again.
+     */
+    @Override
+    public boolean fill() {
+        if (done) return false;
+        try {
+            TokenTable batch = queue.take();
+            if (batch == END) {
+                done = true;
+                if (failure != null) throw new IllegalStateException("lexing failed on thread tokenizer", failure);
+                return false;
+            }
+            tokens.append(batch, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("parsing interrupted", e);
+        }
+        return true;
+    }
+}
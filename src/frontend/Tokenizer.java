@@ -1,195 +1,363 @@
 package frontend;
 
+import frontend.token.Names;
+import frontend.token.TokenTable;
 import frontend.token.Tokens;
-import frontend.exception.SysYException;
+import frontend.token.Tokens.TokenKind;
+import frontend.exception.Diagnostics;
 import frontend.exception.SysYException.*;
 import utils.Reader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Tokenizer implements Scanner.Source {
+    /** Character classes, one entry per ASCII char. Chars >= 128 are OTHER.
+     */
+    private static final byte END = 0;
+    private static final byte SPACE = 1;
+    private static final byte LETTER = 2;
+    private static final byte DIGIT = 3;
+    private static final byte SLASH = 4;
+    private static final byte QUOTES = 5;
+    /** A single char operator, see SINGLE_KINDS. */
+    private static final byte SINGLE = 6;
+    /** '=', '<', '>' or '!', which may be followed by '=', see SINGLE_KINDS and EQUAL_KINDS. */
+    private static final byte WITH_EQUAL = 7;
+    /** '&' or '|', which must be doubled, see DOUBLE_KINDS. */
+    private static final byte DOUBLE = 8;
+    private static final byte OTHER = 9;
+
+    private static final byte[] CLASSES = new byte[128];
+    private static final TokenKind[] SINGLE_KINDS = new TokenKind[128];
+    private static final TokenKind[] EQUAL_KINDS = new TokenKind[128];
+    private static final TokenKind[] DOUBLE_KINDS = new TokenKind[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            if (c == 0) CLASSES[c] = END;
+            else if (c <= ' ') CLASSES[c] = SPACE;
+            else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_') CLASSES[c] = LETTER;
+            else if (c >= '0' && c <= '9') CLASSES[c] = DIGIT;
+            else CLASSES[c] = OTHER;
+        }
+        CLASSES['/'] = SLASH;
+        CLASSES['"'] = QUOTES;
+        single('+', TokenKind.PLUS);
+        single('-', TokenKind.MINUS);
+        single('*', TokenKind.STAR);
+        single('%', TokenKind.MOD);
+        single('(', TokenKind.LPAR);
+        single(')', TokenKind.RPAR);
+        single('[', TokenKind.LSQU);
+        single(']', TokenKind.RSQU);
+        single('{', TokenKind.LBRACE);
+        single('}', TokenKind.RBRACE);
+        single(',', TokenKind.COMMA);
+        single(';', TokenKind.SEMI);
+        withEqual('=', TokenKind.ASSIGN, TokenKind.EQL);
+        withEqual('<', TokenKind.LSS, TokenKind.LEQ);
+        withEqual('>', TokenKind.GRE, TokenKind.GEQ);
+        withEqual('!', TokenKind.NOT, TokenKind.NEQ);
+        CLASSES['&'] = DOUBLE;
+        DOUBLE_KINDS['&'] = TokenKind.AND;
+        CLASSES['|'] = DOUBLE;
+        DOUBLE_KINDS['|'] = TokenKind.OR;
+    }
+
+    private static void single(char c, TokenKind kind) {
+        CLASSES[c] = SINGLE;
+        SINGLE_KINDS[c] = kind;
+    }
+
+    private static void withEqual(char c, TokenKind kind, TokenKind equalKind) {
+        CLASSES[c] = WITH_EQUAL;
+        SINGLE_KINDS[c] = kind;
+        EQUAL_KINDS[c] = equalKind;
+    }
+
+    private static byte classOf(char c) { return c < 128 ? CLASSES[c] : OTHER; }
 
-public class Tokenizer {
-    private final Tokens tokens;
     private final Reader reader;
     private final Scanner scanner;
+    private final Names names;
 
-    public final List<SysYException> errors = new ArrayList<>();
+    /** For a chunk lexed on a thread, the names of the chunk alone, and for each
+     *  of them its id in names + 1, or 0 if not interned there yet; so that names
+     *  shared with other threads are interned once per chunk and not per token.
+     */
+    private final Names local;
+    private int[] shared;
+
+    public final Diagnostics errors = new Diagnostics();
+
+    /** IntConst greater than this does not fit in int. 2147483648 itself is
+     *  allowed and wraps to Integer.MIN_VALUE, so that -2147483648 works.
+     */
+    private static final long INT_LIMIT = 1L << 31;
+
+    /** Chunks of the parallel mode are at least this long, see tokenAnalyse(int).
+     */
+    private static final int MIN_CHUNK = 1 << 18;
 
     private boolean commentsFlag = false;
     private int line = 0;
-    private Tokens.TokenKind tokenKind;
 
-    public Tokenizer(Tokens tokens, Reader reader, Scanner scanner) {
-        this.tokens = tokens;
+    /** Decoded value of the last IntConst, and whether it overflowed.
+     */
+    private int intValue;
+    private boolean intOverflow;
+
+    /** Source offset and length of the last token.
+     */
+    private int tokenStart;
+    private int tokenLength;
+
+    public Tokenizer(Reader reader, Scanner scanner) {
+        this(reader, scanner, null);
+    }
+
+    private Tokenizer(Reader reader, Scanner scanner, Names local) {
         this.reader = reader;
         this.scanner = scanner;
+        this.names = scanner.getTokens().getNames();
+        this.local = local;
+        this.shared = local == null ? null : new int[256];
+    }
+
+    /**
+     * A tokenizer of a chunk, to be lexed on a thread.
+     */
+    private Tokenizer(Reader reader, Names names, boolean commentsFlag) {
+        this(reader, new Scanner(new TokenTable(reader, names)), new Names());
+        this.commentsFlag = commentsFlag;
+    }
+
+    public TokenTable getTokens() { return scanner.getTokens(); }
+
+    /** Finish the token started at tokenStart.
+     */
+    private TokenKind token(TokenKind kind) {
+        tokenLength = reader.getPos() - tokenStart;
+        return kind;
     }
 
     /** Read frontend.token.
+     *  @return kind of the token, or null if current line is done.
      */
-    public Tokens.Token readToken() {
-        reader.resetSp();
+    public TokenKind readToken() {
         while (true) {
-            if (reader.isEnd()) {
+            char c = reader.getChar();
+            tokenStart = reader.getPos();
+            if (c == 0) {
                 return null;
             } else if (commentsFlag) {
-                if (reader.isStar()) {
-                    reader.readChar();
-                    if (reader.isDiv()) {
-                        // Multiline comments end.
-                        commentsFlag = false;
-                        reader.readChar();
-                    }
-                } else reader.readChar();
-            } else if (reader.isWhitespace()) {
                 reader.readChar();
-            } else if (reader.isUnder() || reader.isAlpha()) {
-                while (reader.isUnder() || reader.isAlpha() || reader.isDigit()) {
-                    reader.saveChar();
-                    reader.readChar();
-                }
-                tokenKind = tokens.lookupKeywords(reader.savedToken());
-                break;
-            } else if (reader.isDigit()) {
-                while (reader.isDigit()) {
-                    reader.saveChar();
+                if (c == '*' && reader.getChar() == '/') {
+                    // Multiline comments end.
+                    commentsFlag = false;
                     reader.readChar();
                 }
-                tokenKind = Tokens.TokenKind.INTC;
-                break;
-            } else if (reader.isDiv()) {
-                reader.readChar();
-                if (reader.isDiv()) {
-                    // One-line comments.
-                    return null;
-                } else if (reader.isStar()) {
-                    // Multiline comments.
-                    commentsFlag = true;
+                continue;
+            }
+            switch (classOf(c)) {
+                case SPACE: {
                     reader.readChar();
-                } else {
-                    // A single division sign
-                    tokenKind = Tokens.TokenKind.DIV;
                     break;
                 }
-            } else if (reader.isQuotes()) {
-                // Handle format string.
-                reader.saveChar();
-                reader.readChar();
-                while (!reader.isQuotes()) {
-                    reader.saveChar();
-                    reader.readChar();
+                case LETTER: {
+                    byte cls;
+                    do {
+                        reader.readChar();
+                    } while ((cls = classOf(reader.getChar())) == LETTER || cls == DIGIT);
+                    return token(Tokens.lookupKeyword(reader, tokenStart, reader.getPos() - tokenStart));
                 }
-                reader.saveChar();
-                reader.readChar();
-                tokenKind = Tokens.TokenKind.FORMATS;
-                break;
-            } else if (reader.isEqual()) {
-                reader.readChar();
-                if (reader.isEqual()) {
-                    // Equals
-                    tokenKind = Tokens.TokenKind.EQL;
+                case DIGIT: {
+                    long value = 0;
+                    while ((c = reader.getChar()) <= '9' && c >= '0') {
+                        if (value <= INT_LIMIT) value = value * 10 + (c - '0');
+                        reader.readChar();
+                    }
+                    intOverflow = value > INT_LIMIT;
+                    intValue = intOverflow ? Integer.MAX_VALUE : (int) value;
+                    return token(TokenKind.INTC);
+                }
+                case SLASH: {
                     reader.readChar();
-                } else {
-                    // Assignment
-                    tokenKind = Tokens.TokenKind.ASSIGN;
+                    if (reader.getChar() == '/') {
+                        // One-line comments.
+                        return null;
+                    } else if (reader.getChar() == '*') {
+                        // Multiline comments.
+                        commentsFlag = true;
+                        reader.readChar();
+                        break;
+                    } else {
+                        // A single division sign
+                        return token(TokenKind.DIV);
+                    }
                 }
-                break;
-            } else if (reader.isLess()) {
-                reader.readChar();
-                if (reader.isEqual()) {
-                    // Less Or Equals
-                    tokenKind = Tokens.TokenKind.LEQ;
+                case QUOTES: {
+                    // Handle format string.
+                    do {
+                        reader.readChar();
+                    } while ((c = reader.getChar()) != '"' && c != 0);
                     reader.readChar();
-                } else {
-                    // Less
-                    tokenKind = Tokens.TokenKind.LSS;
+                    return token(TokenKind.FORMATS);
                 }
-                break;
-            } else if (reader.isGreater()) {
-                reader.readChar();
-                if (reader.isEqual()) {
-                    // Greater Or Equals
-                    tokenKind = Tokens.TokenKind.GEQ;
+                case SINGLE: {
                     reader.readChar();
-                } else {
-                    // Greater
-                    tokenKind = Tokens.TokenKind.GRE;
+                    return token(SINGLE_KINDS[c]);
                 }
-                break;
-            } else if (reader.isNot()) {
-                reader.readChar();
-                if (reader.isEqual()) {
-                    // Not equals
-                    tokenKind = Tokens.TokenKind.NEQ;
+                case WITH_EQUAL: {
                     reader.readChar();
-                } else {
-                    // Not
-                    tokenKind = Tokens.TokenKind.NOT;
+                    if (reader.getChar() == '=') {
+                        reader.readChar();
+                        return token(EQUAL_KINDS[c]);
+                    }
+                    return token(SINGLE_KINDS[c]);
                 }
-                break;
-            } else if (reader.isAnd()) {
-                reader.readChar();
-                if (reader.isAnd()) {
-                    tokenKind = Tokens.TokenKind.AND;
+                case DOUBLE: {
                     reader.readChar();
-                } else {
-                    // Error
+                    if (reader.getChar() == c) {
+                        reader.readChar();
+                        return token(DOUBLE_KINDS[c]);
+                    }
+                    // A single '&' or '|' is an illegal symbol, lexed as the doubled one to parse on.
+                    errors.report(EKind.a, line);
+                    return token(DOUBLE_KINDS[c]);
                 }
-                break;
-            } else if (reader.isOr()) {
-                reader.readChar();
-                if (reader.isOr()) {
-                    tokenKind = Tokens.TokenKind.OR;
+                default: {
+                    // An unexpected char is reported and skipped.
+                    errors.report(EKind.a, line);
                     reader.readChar();
-                } else {
-                    // Error
+                    break;
                 }
-                break;
-            } else if (reader.isPlus() || reader.isMinus() || reader.isStar() || reader.isMod()
-                    || reader.isLPar() || reader.isLSqu() || reader.isLBrace()
-                    || reader.isRPar() || reader.isRSqu() || reader.isRBrace()
-                    || reader.isComma() || reader.isSemi()) {
-                tokenKind = tokens.lookupKeywords(String.valueOf(reader.getChar()));
-                reader.readChar();
-                break;
-            } else {
-                System.out.println("Unexpected char:" + reader.getChar());
-                System.exit(1);
-                break;
             }
         }
+    }
 
-        return new Tokens.Token(tokenKind);
+    private void checkFormatString(int offset, int length) {
+        for (int i = 1, size = length - 1; i < size; i++) {
+            char c = reader.charAt(offset + i);
+            if (c == '%') {
+                c = reader.charAt(offset + ++i);
+                if (c != 'd') errors.report(EKind.a, line);
+            } else if (c == '\\') {
+                c = reader.charAt(offset + ++i);
+                if (c != 'n') errors.report(EKind.a, line);
+            } else if (!(c == ' ' || c == 33 || c >= 40 && c <= 126)){
+                errors.report(EKind.a, line);
+            }
+        }
     }
 
-    public void tokenAnalyse() throws SysYException {
-        Tokens.Token token;
-        while (reader.readNextLine()) {
-            line++;
-            while ((token = readToken()) != null) {
-                token.setLine(line);
-                if (token.getTokenKind() == Tokens.TokenKind.IDENT || token.getTokenKind() == Tokens.TokenKind.FORMATS
-                        || token.getTokenKind() == Tokens.TokenKind.INTC) {
-                    token.setValue(reader.savedToken());
-                    if (token.getTokenKind() == Tokens.TokenKind.FORMATS) {
-                        String string = token.getValue();
-                        for (int i = 1, size = string.length() - 1; i < size; i++) {
-                            char c = string.charAt(i);
-                            if (c == '%') {
-                                c = string.charAt(++i);
-                                if (c != 'd') errors.add(new SysYException(EKind.a, line));
-                            } else if (c == '\\') {
-                                c = string.charAt(++i);
-                                if (c != 'n') errors.add(new SysYException(EKind.a, line));
-                            } else if (!(c == ' ' || c == 33 || c >= 40 && c <= 126)){
-                                errors.add(new SysYException(EKind.a, line));
-                            }
-                        }
-                    }
-                }
-                scanner.saveToken(token);
+    public void tokenAnalyse() {
+        analyse();
+    }
+
+    /**
+     * The same as tokenAnalyse(), but the source is split into chunks at line
+     * boundaries that are lexed on threads. As whether a chunk starts inside a
+     * multiline comment is unknown until the chunk before it is lexed, each chunk
+     * is lexed from both states, and the runs are then chained in order by the
+     * state the chosen run of the previous chunk ends with. Tokens and errors are
+     * the same as those of tokenAnalyse(), except that names are numbered in the
+     * order the threads intern them.
+     * @throws IllegalStateException if lexing a chunk failed, caused by what it failed
+     *  with, or if the calling thread was interrupted, which is then interrupted again.
+     */
+    public void tokenAnalyse(int threads) {
+        int size = reader.size();
+        int count = Math.min(threads * 4, size / MIN_CHUNK);
+        if (threads <= 1 || count < 2) {
+            tokenAnalyse();
+            return;
+        }
+        int[] bounds = new int[count + 1];
+        for (int i = 1; i < count; i++) {
+            bounds[i] = reader.nextLineStart(Math.max((int) ((long) size * i / count), bounds[i - 1]));
+        }
+        bounds[count] = size;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // runs[2 * i + 1] starts inside a comment; the first chunk never does.
+            List<Future<Tokenizer>> runs = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int begin = bounds[i], end = bounds[i + 1];
+                runs.add(pool.submit(() -> new Tokenizer(reader.region(begin, end), names, false).analyse()));
+                runs.add(i == 0 ? null : pool.submit(() -> new Tokenizer(reader.region(begin, end), names, true).analyse()));
+            }
+            for (int i = 0; i < count; i++) {
+                Tokenizer run = runs.get(2 * i + (commentsFlag ? 1 : 0)).get();
+                // Drop both runs of the chunk once merged.
+                runs.set(2 * i, null);
+                runs.set(2 * i + 1, null);
+                scanner.getTokens().append(run.scanner.getTokens(), line);
+                errors.addAll(run.errors, line);
+                line += run.line;
+                commentsFlag = run.commentsFlag;
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("lexing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("lexing interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Lex the next line, for tokens pulled by the scanner.
+     */
+    @Override
+    public boolean fill() {
+        return lexLine();
+    }
+
+    /** Lex until the end of reader.
+     */
+    private Tokenizer analyse() {
+        while (lexLine());
+        return this;
+    }
+
+    private int intern(int offset, int length) {
+        if (local == null) return names.intern(reader, offset, length);
+        int id = local.intern(reader, offset, length);
+        if (id >= shared.length) shared = Arrays.copyOf(shared, shared.length << 1);
+        if (shared[id] == 0) shared[id] = names.intern(local.getName(id)) + 1;
+        return shared[id] - 1;
+    }
+
+    /**
+     * Lex the next line and save its tokens.
+     * @return false if reader is done.
+     */
+    boolean lexLine() {
+        if (!reader.readNextLine()) return false;
+        line++;
+        TokenKind kind;
+        while ((kind = readToken()) != null) {
+            int value = 0;
+            if (kind == TokenKind.IDENT) {
+                value = intern(tokenStart, tokenLength);
+            } else if (kind == TokenKind.INTC) {
+                value = intValue;
+                // A constant too big for an int is an illegal symbol, as no kind is defined for it.
+                if (intOverflow) errors.report(EKind.a, line);
+            } else if (kind == TokenKind.FORMATS) {
+                checkFormatString(tokenStart, tokenLength);
             }
+            scanner.saveToken(kind, line, tokenStart, tokenLength, value);
         }
-        throw new SysYException(EKind.o, line);
+        return true;
     }
 }
@@ -0,0 +1,87 @@
+package frontend.exception;
+
+import frontend.exception.SysYException.EKind;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Errors of one phase, reported instead of thrown, so that the phase goes on
+ * after an error and all errors of an input are found in one run.
+ */
+public class Diagnostics {
+    private final List<SysYException> errors = new ArrayList<>();
+    /** Lines where the parser skipped tokens to recover, kept apart from errors.
+     */
+    private final BitSet recovered = new BitSet();
+
+    public void report(EKind kind, int line) {
+        errors.add(new SysYException(kind, line));
+    }
+
+    /**
+     * Drop the errors reported after the first size of them.
+     */
+    public void rollback(int size) {
+        errors.subList(size, errors.size()).clear();
+    }
+
+    /**
+     * Note that tokens on line were skipped to recover from a syntax error, which
+     * has no kind of its own, see merge().
+     */
+    public void recover(int line) {
+        recovered.set(line);
+    }
+
+    /**
+     * Add all errors of other, with lines moved down by lineOffset.
+     */
+    public void addAll(Diagnostics other, int lineOffset) {
+        for (SysYException e : other.errors) {
+            errors.add(new SysYException(e.getKind(), e.getLine() + lineOffset));
+        }
+        for (int line = other.recovered.nextSetBit(0); line >= 0; line = other.recovered.nextSetBit(line + 1))
+            recovered.set(line + lineOffset);
+    }
+
+    /**
+     * @return errors in the order they were reported.
+     */
+    public List<SysYException> getErrors() { return errors; }
+
+    public int size() { return errors.size(); }
+
+    public boolean isEmpty() { return errors.isEmpty(); }
+
+    /**
+     * Merge errors of phases into one stream sorted by line. Errors of a line
+     * are in the order of phases, then in the order they were reported. Of a line
+     * where the parser recovered, only the first error is kept, as the others
+     * follow from tokens skipped or misread, and if there is none an illegal
+     * symbol is reported for the tokens skipped.
+     */
+    public static List<SysYException> merge(Diagnostics... phases) {
+        List<SysYException> merged = new ArrayList<>();
+        BitSet recovered = new BitSet();
+        for (Diagnostics phase : phases) {
+            merged.addAll(phase.errors);
+            recovered.or(phase.recovered);
+        }
+        for (int line = recovered.nextSetBit(0); line >= 0; line = recovered.nextSetBit(line + 1))
+            merged.add(new SysYException(EKind.a, line));
+        merged.sort(Comparator.comparingInt(SysYException::getLine));
+        if (recovered.isEmpty()) return merged;
+        List<SysYException> kept = new ArrayList<>();
+        for (SysYException e : merged) {
+            if (recovered.get(e.getLine()) && !kept.isEmpty() && kept.get(kept.size() - 1).getLine() == e.getLine()) continue;
+            kept.add(e);
+        }
+        return kept;
+    }
+
+    @Override
+    public String toString() { return errors.toString(); }
+}
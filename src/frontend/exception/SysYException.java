@@ -30,13 +30,16 @@ public class SysYException extends Exception {
     public EKind kind;
     public int line;
 
+    /** Errors are reported rather than thrown, see Diagnostics, so no stack trace is taken.
+     */
     public SysYException(EKind kind, int line) {
+        super(null, null, false, false);
         this.kind = kind;
         this.line = line;
     }
 
     public SysYException(EKind kind) {
-        this.kind = kind;
+        this(kind, 0);
     }
 
     public void setLine(int line) {
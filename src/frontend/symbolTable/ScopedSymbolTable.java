@@ -0,0 +1,89 @@
+package frontend.symbolTable;
+
+import java.util.Arrays;
+
+/**
+ * Symbols of all scopes in one flat table indexed by id, where each id has a
+ * stack of bindings with the innermost one on top. Ids bound in a scope are
+ * logged, and their bindings are popped by the log when the scope is exited,
+ * so that entering and exiting a scope and looking a symbol up are O(1), and
+ * no map is made for a scope. The global scope is at depth 0.
+ */
+public abstract class ScopedSymbolTable<T> {
+    private static class Binding<T> {
+        private T symbol;
+        private final int depth;
+        private final Binding<T> shadowed;
+
+        private Binding(T symbol, int depth, Binding<T> shadowed) {
+            this.symbol = symbol;
+            this.depth = depth;
+            this.shadowed = shadowed;
+        }
+    }
+
+    /** The innermost binding of each id, at id + 1 as a missing name has id -1.
+     */
+    // Arrays of Binding<T> cannot be created, only of Binding<?>, and this one holds Binding<T> only.
+    @SuppressWarnings("unchecked")
+    private Binding<T>[] bindings = (Binding<T>[]) new Binding<?>[256];
+
+    /** Ids bound, in order, and the size of the log when each scope was entered.
+     */
+    private int[] log = new int[256];
+    private int logSize = 0;
+    private int[] marks = new int[16];
+    private int depth = 0;
+
+    public void pushScope() {
+        if (depth == marks.length) marks = Arrays.copyOf(marks, depth << 1);
+        marks[depth++] = logSize;
+    }
+
+    public void popScope() {
+        int mark = marks[--depth];
+        while (logSize > mark) {
+            int slot = log[--logSize];
+            bindings[slot] = bindings[slot].shadowed;
+        }
+    }
+
+    public int getDepth() { return depth; }
+
+    /**
+     * Bind id to symbol in the current scope, replacing its binding in the scope if any.
+     */
+    protected void bind(int id, T symbol) {
+        int slot = id + 1;
+        if (slot >= bindings.length) bindings = Arrays.copyOf(bindings, Math.max(slot + 1, bindings.length << 1));
+        Binding<T> top = bindings[slot];
+        if (top != null && top.depth == depth) {
+            top.symbol = symbol;
+            return;
+        }
+        bindings[slot] = new Binding<>(symbol, depth, top);
+        if (logSize == log.length) log = Arrays.copyOf(log, logSize << 1);
+        log[logSize++] = slot;
+    }
+
+    private Binding<T> top(int id) {
+        int slot = id + 1;
+        return slot < bindings.length ? bindings[slot] : null;
+    }
+
+    /**
+     * @return the symbol of id in the current scope, or null.
+     */
+    public T findSymbol(int id) {
+        Binding<T> top = top(id);
+        return top != null && top.depth == depth ? top.symbol : null;
+    }
+
+    /**
+     * @return the symbol of id in the innermost scope it is bound in, or null.
+     */
+    public T findSymbolInAll(int id) {
+        Binding<T> top = top(id);
+        return top != null ? top.symbol : null;
+    }
+}
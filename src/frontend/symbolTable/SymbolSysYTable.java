@@ -1,57 +1,116 @@
 package frontend.symbolTable;
 
-import frontend.exception.SysYException;
-import frontend.tree.SysYTree.SysYSymbol;
+import frontend.exception.Diagnostics;
+import frontend.exception.SysYException.EKind;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
-public class SymbolSysYTable implements SymbolTable<SysYSymbol>{
+/**
+ * Symbols are the FlatTree nodes defining them, see frontend.Checker.
+ */
+public class SymbolSysYTable extends ScopedSymbolTable<Integer> implements SymbolTable<Integer> {
     public enum STKind {
         INT_FUNC,
         VOID_FUNC
     }
 
-    private final Map<String, SysYSymbol> symbolMap;
-    private final SymbolSysYTable parent;
-    private STKind kind;
+    /** The kind of each scope entered, null for scopes other than function ones.
+     */
+    private STKind[] kinds = new STKind[16];
 
-    public SymbolSysYTable(SymbolSysYTable parent, STKind kind) {
-        this.parent = parent;
-        symbolMap = new HashMap<>();
-        this.kind = kind;
+    /** Where semantic errors found with this table are reported.
+     */
+    private final Diagnostics errors;
+
+    /** A table whose global scope is read as the global scope of this one, or null.
+     *  It is not changed while this table is used, so that tables of several
+     *  functions may share it across threads.
+     */
+    private final SymbolSysYTable globals;
+
+    /** Only the first visible symbols bound in the global scope of globals are seen.
+     */
+    private final int visible;
+
+    /** The order each id is bound in the global scope, counted from 1, at id + 1,
+     *  or 0 if it is not bound there.
+     */
+    private int[] orders = new int[256];
+    private int globalCount = 0;
+
+    public SymbolSysYTable() {
+        this(new Diagnostics());
     }
 
-    public SymbolSysYTable(SymbolSysYTable parent) {
-        this.parent = parent;
-        symbolMap = new HashMap<>();
+    public SymbolSysYTable(Diagnostics errors) {
+        this(null, 0, errors);
     }
 
-    public void addSymbol(String name, SysYSymbol symbol) throws SysYException {
-        if (this.symbolMap.containsKey(name)) {
-            throw new SysYException(SysYException.EKind.b);
-        } else {
-            this.symbolMap.put(name, symbol);
-        }
+    /**
+     * A table for checking a function apart from others, see frontend.Checker.
+     * @param visible how many global symbols of globals are bound before the function.
+     */
+    public SymbolSysYTable(SymbolSysYTable globals, int visible, Diagnostics errors) {
+        this.globals = globals;
+        this.visible = visible;
+        this.errors = errors;
+    }
+
+    public void pushScope(STKind kind) {
+        super.pushScope();
+        if (getDepth() == kinds.length) kinds = Arrays.copyOf(kinds, kinds.length << 1);
+        kinds[getDepth()] = kind;
     }
 
-    public SysYSymbol findSymbol(String name) { return this.symbolMap.get(name); }
+    @Override
+    public void pushScope() {
+        pushScope(null);
+    }
 
-    public SysYSymbol findSymbolInAll(String name) {
-        SymbolSysYTable temp = this;
-        SysYSymbol symbol = null;
-        while (temp != null && symbol == null) {
-            symbol = temp.findSymbol(name);
-            temp = temp.parent;
+    @Override
+    public boolean addSymbol(int id, Integer symbol) {
+        if (findSymbol(id) != null) return false;
+        bind(id, symbol);
+        if (getDepth() == 0) {
+            if (id + 1 >= orders.length) orders = Arrays.copyOf(orders, Math.max(id + 2, orders.length << 1));
+            orders[id + 1] = ++globalCount;
         }
-        return symbol;
+        return true;
     }
 
-    public SymbolSysYTable getParent() {
-        return parent;
+    @Override
+    public Integer findSymbol(int id) {
+        Integer symbol = super.findSymbol(id);
+        return symbol == null && getDepth() == 0 ? findGlobal(id) : symbol;
     }
 
+    @Override
+    public Integer findSymbolInAll(int id) {
+        Integer symbol = super.findSymbolInAll(id);
+        return symbol == null ? findGlobal(id) : symbol;
+    }
+
+    private Integer findGlobal(int id) {
+        if (globals == null || id + 1 >= globals.orders.length) return null;
+        int order = globals.orders[id + 1];
+        return order != 0 && order <= visible ? globals.findSymbolInAll(id) : null;
+    }
+
+    /**
+     * @return the number of symbols bound in the global scope.
+     */
+    public int getGlobalCount() { return globalCount; }
+
+    public void report(EKind kind, int line) {
+        errors.report(kind, line);
+    }
+
+    public Diagnostics getErrors() { return errors; }
+
+    /**
+     * @return the kind of the current scope.
+     */
     public STKind getKind() {
-        return kind;
+        return kinds[getDepth()];
     }
 }
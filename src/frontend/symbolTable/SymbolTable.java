@@ -1,9 +1,13 @@
 package frontend.symbolTable;
 
+/** Symbols are keyed by ids of their names, see frontend.token.Names. */
 public interface SymbolTable<T> {
-    void addSymbol(String name, T symbol) throws Exception;
+    /**
+     * @return false if id is already bound in the current scope.
+     */
+    boolean addSymbol(int id, T symbol);
 
-    T findSymbol(String name);
+    T findSymbol(int id);
 
-    T findSymbolInAll(String name);
+    T findSymbolInAll(int id);
 }
@@ -1,35 +1,55 @@
 package frontend.symbolTable;
 
-import java.util.Map;
-import java.util.HashMap;
-
 import midend.mir.Value;
 
-public class SymbolValueTable implements SymbolTable<Value> {
-    private final Map<String, Value> symbolMap = new HashMap<>();
-    private final SymbolValueTable parent;
-
-    public SymbolValueTable(SymbolValueTable table) {
-        parent = table;
+public class SymbolValueTable extends ScopedSymbolTable<SymbolValueTable.Entry>
+        implements SymbolTable<SymbolValueTable.Entry> {
+    public enum VKind {
+        LOCAL_CONST,
+        LOCAL_VAR,
+        PARAM,
+        GLOBAL_CONST,
+        GLOBAL_VAR
     }
 
-    public void addSymbol(String name, Value value) {
-        symbolMap.put(name, value);
-    }
-
-    public Value findSymbol(String name) { return symbolMap.get(name); }
+    /**
+     * local const : initial
+     * local var : value(type, regName, identName)      alloca
+     * func param : value(type, regName, identName)     alloca
+     * global const : initial, with pointer value(type, @+regName)
+     * global var : value(type, @+regName)              define
+     */
+    public static class Entry {
+        private final VKind kind;
+        private final Value value;
+        /** The global variable of a global const, for indexes unknown at compile time. */
+        private final Value pointer;
+
+        public Entry(VKind kind, Value value, Value pointer) {
+            this.kind = kind;
+            this.value = value;
+            this.pointer = pointer;
+        }
 
-    public Value findSymbolInAll(String name) {
-        SymbolValueTable temp = this;
-        Value value = null;
-        while (temp != null && value == null) {
-            value = temp.findSymbol(name);
-            temp = temp.parent;
+        public Entry(VKind kind, Value value) {
+            this(kind, value, null);
         }
-        return value;
+
+        public VKind getKind() { return kind; }
+
+        public Value getValue() { return value; }
+
+        public Value getPointer() { return pointer; }
     }
 
-    public SymbolValueTable getParent() {
-        return parent;
+    public SymbolValueTable() {}
+
+    /**
+     * Bind id to entry, replacing its entry in the current scope if any.
+     */
+    public boolean addSymbol(int id, Entry entry) {
+        boolean fresh = findSymbol(id) == null;
+        bind(id, entry);
+        return fresh;
     }
-}
\ No newline at end of file
+}
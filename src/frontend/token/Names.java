@@ -0,0 +1,86 @@
+package frontend.token;
+
+import utils.Reader;
+
+import java.util.Arrays;
+
+/**
+ * Interns identifiers to dense int ids, numbered in the order they are first
+ * interned. An identifier is hashed and compared straight from the source, so
+ * no String is made for an identifier seen before.
+ * One Names is shared by all token tables of a compilation. Names are only
+ * interned by one thread at a time, except that intern(String) may be called
+ * by many threads at once; getName() may be called by any thread the id was
+ * passed to.
+ */
+public class Names {
+    /** Written only while interning; volatile so that a reader on another thread
+     *  sees the names copied into an array grown after the id was passed to it.
+     */
+    private volatile String[] names = new String[256];
+    private int[] hashes = new int[256];
+
+    /** Open addressing table of id + 1, or 0 for an empty slot.
+     */
+    private int[] slots = new int[512];
+
+    private int size = 0;
+
+    /**
+     * @return the id of the identifier of length chars starting at offset of source.
+     */
+    public int intern(Reader source, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) hash = 31 * hash + source.charAt(offset + i);
+        String[] names = this.names;
+        int mask = slots.length - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) return add(source.slice(offset, length), hash, i);
+            if (hashes[id] == hash && source.matches(offset, length, names[id])) return id;
+        }
+    }
+
+    /**
+     * @return the id of name.
+     */
+    public synchronized int intern(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) return add(name, hash, i);
+            if (hashes[id] == hash && names[id].equals(name)) return id;
+        }
+    }
+
+    private static int spread(int hash) { return hash ^ (hash >>> 16); }
+
+    private int add(String name, int hash, int slot) {
+        String[] names = this.names;
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size << 1);
+            hashes = Arrays.copyOf(hashes, size << 1);
+        }
+        names[size] = name;
+        this.names = names;
+        hashes[size] = hash;
+        slots[slot] = size + 1;
+        if (++size << 1 > slots.length) rehash();
+        return size - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = spread(hashes[id]) & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+
+    public String getName(int id) { return names[id]; }
+
+    public int size() { return size; }
+}
@@ -0,0 +1,168 @@
+package frontend.token;
+
+import frontend.token.Tokens.TokenKind;
+import utils.Reader;
+
+import java.util.Arrays;
+
+/**
+ * All tokens of a source file, stored as parallel int arrays indexed by
+ * token number instead of one object per token. Text of a token is not
+ * kept; it is sliced out of the source on demand, except that identifiers
+ * are interned to ids of the names of the table, which tables of the same
+ * compilation share.
+ * When tokens are streamed to the parser, tokens it no longer needs are
+ * released, and only a window of the table is kept; indices are still
+ * numbers of tokens in the whole file.
+ */
+public class TokenTable {
+    private static final TokenKind[] KINDS = TokenKind.values();
+
+    /** The source the offsets refer to.
+     */
+    private final Reader source;
+
+    /** Ids of the identifiers among the tokens.
+     */
+    private final Names names;
+
+    /** Kind ordinal, line, source offset and length of each token.
+     */
+    private int[] kinds = new int[1024];
+    private int[] lines = new int[1024];
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+
+    /** Decoded value of IntConst, id of Identifier, 0 for other tokens.
+     */
+    private int[] values = new int[1024];
+
+    /** The number of tokens ever added, and the index of the first token kept,
+     *  which is stored at 0 of the arrays.
+     */
+    private int size = 0;
+    private int base = 0;
+
+    public TokenTable(Reader source) {
+        this(source, new Names());
+    }
+
+    /**
+     * @param names the names to intern identifiers to, shared with other tables.
+     */
+    public TokenTable(Reader source, Names names) {
+        this.source = source;
+        this.names = names;
+    }
+
+    /**
+     * Append a token.
+     * @return the index of the new token.
+     */
+    public int add(TokenKind kind, int line, int offset, int length, int value) {
+        int slot = size - base;
+        if (slot == kinds.length) grow(slot << 1);
+        kinds[slot] = kind.ordinal();
+        lines[slot] = line;
+        offsets[slot] = offset;
+        lengths[slot] = length;
+        values[slot] = value;
+        return size++;
+    }
+
+    /**
+     * Append all tokens of other, adding lineOffset to their lines.
+     * Identifiers of a table with other names are interned again to ids of this table.
+     */
+    public void append(TokenTable other, int lineOffset) {
+        int n = other.size - other.base, slot = size - base;
+        if (slot + n > kinds.length) grow(Math.max(slot << 1, slot + n));
+        System.arraycopy(other.kinds, 0, kinds, slot, n);
+        System.arraycopy(other.offsets, 0, offsets, slot, n);
+        System.arraycopy(other.lengths, 0, lengths, slot, n);
+        System.arraycopy(other.values, 0, values, slot, n);
+        if (other.names == names) {
+            for (int i = 0; i < n; i++) lines[slot + i] = other.lines[i] + lineOffset;
+            size += n;
+            return;
+        }
+        // ids of other + 1, or 0 if not interned yet.
+        int[] ids = new int[other.names.size()];
+        for (int i = 0; i < n; i++) {
+            lines[slot + i] = other.lines[i] + lineOffset;
+            if (kinds[slot + i] == TokenKind.IDENT.ordinal()) {
+                int id = other.values[i];
+                if (ids[id] == 0) ids[id] = names.intern(other.names.getName(id)) + 1;
+                values[slot + i] = ids[id] - 1;
+            }
+        }
+        size += n;
+    }
+
+    /**
+     * Tokens before index will not be read again, and may be dropped.
+     * They are moved out only when they are at least as many as the tokens kept,
+     * so that each token is moved O(1) times.
+     */
+    public void release(int index) {
+        int dead = index - base, live = size - index;
+        if (dead < 64 || dead < live) return;
+        System.arraycopy(kinds, dead, kinds, 0, live);
+        System.arraycopy(lines, dead, lines, 0, live);
+        System.arraycopy(offsets, dead, offsets, 0, live);
+        System.arraycopy(lengths, dead, lengths, 0, live);
+        System.arraycopy(values, dead, values, 0, live);
+        base = index;
+    }
+
+    /**
+     * Drop all tokens kept. Indices of tokens added later still go on from size().
+     */
+    public void clear() {
+        base = size;
+    }
+
+    private void grow(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    public int size() { return size; }
+
+    /** The index of the first token kept.
+     */
+    public int first() { return base; }
+
+    public TokenKind getKind(int index) { return KINDS[kinds[index - base]]; }
+
+    public int getLine(int index) { return lines[index - base]; }
+
+    public int getOffset(int index) { return offsets[index - base]; }
+
+    public int getLength(int index) { return lengths[index - base]; }
+
+    public int getIntValue(int index) { return values[index - base]; }
+
+    public Names getNames() { return names; }
+
+    /** Real value for IntConst, FormatString and Identifier, or null for other tokens.
+     */
+    public String getValue(int index) {
+        switch (getKind(index)) {
+            case IDENT:
+                return names.getName(getIntValue(index));
+            case INTC: case FORMATS:
+                return source.slice(getOffset(index), getLength(index));
+            default:
+                return null;
+        }
+    }
+
+    public String toString(int index) {
+        String value = getValue(index);
+        return getKind(index).getCode() + " " + (value == null ? "" : value);
+    }
+}
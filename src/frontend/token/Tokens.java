@@ -1,15 +1,9 @@
 package frontend.token;
 
-import java.util.HashMap;
+import utils.Reader;
 
 public class Tokens {
-    private static final HashMap<String, TokenKind> keywords = new HashMap<>();
-
-    public Tokens() {
-        for (TokenKind t : TokenKind.values()) {
-            keywords.put(t.name, t);
-        }
-    }
+    private Tokens() {}
 
     public enum TokenKind {
         IDENT("identifier", "IDENFR"),
@@ -100,62 +94,43 @@ public class Tokens {
         public String toString() { return this.code; }
     }
 
-    public static class Token {
-        /** Kind of frontend.token.
-         */
-        private final TokenKind tokenKind;
-
-        /** Which line.
-         */
-        private int line;
-
-        /** Real value for IntConst, FormatString and Identifier.
-         */
-        private String value;
-
-        public Token(TokenKind tokenKind) {
-            this.tokenKind = tokenKind;
-            this.line = 0;
-            this.value = null;
+    /**
+     * Recognize a keyword by its length and first char, then compare it in place,
+     * so no string is built for the word.
+     * @return kind of the word of given length at offset of source, or IDENT if it is not a keyword.
+     */
+    public static TokenKind lookupKeyword(Reader source, int offset, int length) {
+        TokenKind t = null;
+        char first = source.charAt(offset);
+        switch (length) {
+            case 2:
+                if (first == 'i') t = TokenKind.IF;
+                break;
+            case 3:
+                if (first == 'i') t = TokenKind.INT;
+                break;
+            case 4:
+                if (first == 'v') t = TokenKind.VOID;
+                else if (first == 'm') t = TokenKind.MAIN;
+                else if (first == 'e') t = TokenKind.ELSE;
+                break;
+            case 5:
+                if (first == 'c') t = TokenKind.CONST;
+                else if (first == 'w') t = TokenKind.WHILE;
+                else if (first == 'b') t = TokenKind.BREAK;
+                break;
+            case 6:
+                if (first == 'r') t = TokenKind.RETURN;
+                else if (first == 'p') t = TokenKind.PRINTF;
+                else if (first == 'g') t = TokenKind.GETINT;
+                break;
+            case 8:
+                if (first == 'c') t = TokenKind.CONTINUE;
+                break;
+            default:
+                break;
         }
-
-        public Token(TokenKind tokenKind, int line) {
-            this.tokenKind = tokenKind;
-            this.line = line;
-            this.value = null;
-        }
-
-        public Token(TokenKind tokenKind, int line, String value) {
-            this.tokenKind = tokenKind;
-            this.line = line;
-            this.value = value;
-        }
-
-        @Override
-        public String toString() {
-            return this.tokenKind.code + " " + (value == null ? "" : value);
-        }
-
-        public TokenKind getTokenKind() {
-            return tokenKind;
-        }
-
-        public int getLine() {
-            return line;
-        }
-
-        public String getValue() {
-            return value;
-        }
-
-        public void setLine(int line) { this.line = line; }
-
-        public void setValue(String value) { this.value = value; }
-    }
-
-    public TokenKind lookupKeywords(String name) {
-        TokenKind t = keywords.get(name);
-        return t != null ? t : TokenKind.IDENT;
+        return t != null && source.matches(offset, length, t.name) ? t : TokenKind.IDENT;
     }
 
 }
@@ -0,0 +1,250 @@
+package frontend.tree;
+
+import frontend.token.Names;
+import frontend.token.Tokens.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The syntax tree stored in parallel int arrays indexed by node number, with
+ * the kind, first child, next sibling, payload and line of each node, instead
+ * of one object per node and a List per child collection. The parser emits
+ * nodes straight into the arrays, and the semantic checks and IR generation
+ * walk them.
+ * <p>
+ * A node is added unlinked, and appended to its parent once the parent is
+ * added, so that an operand is added before the expression it is an operand
+ * of. The compilation unit is added first, as the root.
+ * <p>
+ * Children are walked as a cursor:
+ * {@code for (int c = tree.firstChild(n); c != FlatTree.NONE; c = tree.nextSibling(c))}.
+ * <pre>
+ * node            payload        line              children
+ * COMP_UNIT                                        DECL..., INT_FUNC_DEF / VOID_FUNC_DEF..., MAIN_FUNC_DEF
+ * DECL                                             CONST_DEF / VAR_DEF...
+ * CONST_DEF       name id        of the name       dimension exp..., [INIT]
+ * VAR_DEF         name id        of the name       dimension exp..., [INIT]
+ * INIT                                             INIT... for arrays, or exp
+ * INT_FUNC_DEF    name id        of the name       PARAM / ARRAY_PARAM..., BLOCK
+ * VOID_FUNC_DEF   name id        of the name       PARAM / ARRAY_PARAM..., BLOCK
+ * PARAM           name id        of the name
+ * ARRAY_PARAM     name id        of the name       [second dimension exp]
+ * MAIN_FUNC_DEF                                    BLOCK
+ * BLOCK                          of the '}'        DECL / statement...
+ * ASSIGN                                           LVAL, exp
+ * IF                                               cond, stmt, [stmt]
+ * WHILE                                            cond, stmt
+ * BREAK, CONTINUE                of the keyword
+ * RETURN                         of the keyword    [exp]
+ * EXP_STMT                                         [exp]
+ * PRINTF          string index   of the keyword    exp...
+ * UNARY           op ordinal                       exp
+ * BINARY          op ordinal                       exp, exp
+ * INTC            value
+ * LVAL            name id        of the name       index exp...
+ * CALL            name id        of the name       exp...
+ * GETINT
+ * </pre>
+ * A name id is -1 where the name is missing.
+ */
+public class FlatTree {
+    public enum Kind {
+        COMP_UNIT,
+        DECL,
+        CONST_DEF,
+        VAR_DEF,
+        INIT,
+        INT_FUNC_DEF,
+        VOID_FUNC_DEF,
+        PARAM,
+        ARRAY_PARAM,
+        MAIN_FUNC_DEF,
+        BLOCK,
+        ASSIGN,
+        IF,
+        WHILE,
+        BREAK,
+        CONTINUE,
+        RETURN,
+        EXP_STMT,
+        PRINTF,
+        UNARY,
+        BINARY,
+        INTC,
+        LVAL,
+        CALL,
+        GETINT
+    }
+
+    /** Visits nodes in a walk of the tree, see walk().
+     */
+    public interface Visitor {
+        /**
+         * @return false to skip the children of node.
+         */
+        boolean enter(int node);
+
+        default void exit(int node) {}
+    }
+
+    /** No node, as the first child of a leaf or the next sibling of a last child.
+     */
+    public static final int NONE = -1;
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final TokenKind[] OPS = TokenKind.values();
+
+    /** Set in kinds of expressions which contain function calls.
+     */
+    private static final int HAS_CALL = 1 << 8;
+
+    private int[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] payloads;
+    private int[] lines;
+    private int size = 0;
+
+    /** The last child of each node, while children are appended.
+     */
+    private int[] lastChildren;
+
+    /** Names by id, and format strings by index.
+     */
+    private final Names names;
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * @param capacity the nodes expected, past which the arrays grow.
+     */
+    public FlatTree(Names names, int capacity) {
+        this.names = names;
+        kinds = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        payloads = new int[capacity];
+        lines = new int[capacity];
+        lastChildren = new int[capacity];
+    }
+
+    public int root() { return 0; }
+
+    public int size() { return size; }
+
+    public Kind kind(int node) { return KINDS[kinds[node] & 0xff]; }
+
+    public int firstChild(int node) { return firstChildren[node]; }
+
+    public int nextSibling(int node) { return nextSiblings[node]; }
+
+    public int payload(int node) { return payloads[node]; }
+
+    public int line(int node) { return lines[node]; }
+
+    /**
+     * @return the index-th child of node, or NONE.
+     */
+    public int child(int node, int index) {
+        int child = firstChildren[node];
+        while (index-- > 0 && child != NONE) child = nextSiblings[child];
+        return child;
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) count++;
+        return count;
+    }
+
+    /** The operator of UNARY and BINARY.
+     */
+    public TokenKind op(int node) { return OPS[payloads[node]]; }
+
+    /** The name of nodes whose payload is a name id, or null if it is missing.
+     */
+    public String name(int node) { return payloads[node] < 0 ? null : names.getName(payloads[node]); }
+
+    /** The format string of PRINTF.
+     */
+    public String string(int node) { return strings.get(payloads[node]); }
+
+    /**
+     * @return true if the expression contains function calls.
+     */
+    public boolean hasCall(int node) { return (kinds[node] & HAS_CALL) != 0; }
+
+    /**
+     * Walk the subtree of node in preorder, calling exit() after the children.
+     */
+    public void walk(int node, Visitor visitor) {
+        if (visitor.enter(node)) {
+            for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                walk(child, visitor);
+            }
+        }
+        visitor.exit(node);
+    }
+
+    /**
+     * Add an unlinked node without a line.
+     * @return the node.
+     */
+    public int add(Kind kind, int payload) {
+        return add(kind, payload, 0);
+    }
+
+    /**
+     * Add an unlinked node, see append().
+     * @return the node.
+     */
+    public int add(Kind kind, int payload, int line) {
+        if (size == kinds.length) {
+            int capacity = size << 1;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+        }
+        kinds[size] = kind == Kind.CALL ? kind.ordinal() | HAS_CALL : kind.ordinal();
+        firstChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        payloads[size] = payload;
+        lines[size] = line;
+        lastChildren[size] = NONE;
+        return size++;
+    }
+
+    /**
+     * @return the index of string, as the payload of a PRINTF node.
+     */
+    public int addString(String string) {
+        strings.add(string);
+        return strings.size() - 1;
+    }
+
+    public void setLine(int node, int line) { lines[node] = line; }
+
+    /**
+     * Link unlinked child after the last child of parent. An operator over an
+     * expression containing function calls contains them too.
+     */
+    public void append(int parent, int child) {
+        int last = lastChildren[parent];
+        if (last == NONE) firstChildren[parent] = child;
+        else nextSiblings[last] = child;
+        lastChildren[parent] = child;
+        Kind kind = kind(parent);
+        if ((kinds[child] & HAS_CALL) != 0 && (kind == Kind.UNARY || kind == Kind.BINARY)) kinds[parent] |= HAS_CALL;
+    }
+
+    /**
+     * Drop the nodes added from size on, none of which may be a child of a node before.
+     */
+    public void truncate(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,53 @@
+package midend;
+
+import midend.mir.Function;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Something computed from a function, cached by AnalysisManager until a pass
+ * changes the function without preserving it, or an analysis it depends on.
+ * @param <T> the result.
+ */
+public abstract class Analysis<T> {
+    public static final Analysis<FlowGraph> FLOW_GRAPH = new Analysis<FlowGraph>("flow graph") {
+        @Override
+        protected FlowGraph compute(Function function, AnalysisManager analyses) {
+            return function.getFlowGraph();
+        }
+    };
+    public static final Analysis<DominatorTree> DOMINATOR_TREE = new Analysis<DominatorTree>("dominator tree", FLOW_GRAPH) {
+        @Override
+        protected DominatorTree compute(Function function, AnalysisManager analyses) {
+            return analyses.get(FLOW_GRAPH, function).getDominatorTree();
+        }
+    };
+    public static final Analysis<LiveAnalysis> LIVENESS = new Analysis<LiveAnalysis>("liveness", FLOW_GRAPH) {
+        @Override
+        protected LiveAnalysis compute(Function function, AnalysisManager analyses) {
+            return new LiveAnalysis(function, analyses.get(FLOW_GRAPH, function));
+        }
+    };
+
+    private final String name;
+    private final List<Analysis<?>> dependencies;
+
+    /**
+     * @param dependencies analyses compute() gets, whose results the result is made of.
+     */
+    protected Analysis(String name, Analysis<?>... dependencies) {
+        this.name = name;
+        this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+    }
+
+    public String getName() { return name; }
+
+    public List<Analysis<?>> getDependencies() { return dependencies; }
+
+    protected abstract T compute(Function function, AnalysisManager analyses);
+
+    @Override
+    public String toString() { return name; }
+}
@@ -0,0 +1,71 @@
+package midend;
+
+import midend.mir.Function;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of analyses of functions, computed when first asked for and kept until
+ * invalidated. Passes get analyses from here, and PassManager invalidates those a
+ * pass does not preserve in the functions it changed.
+ */
+public class AnalysisManager {
+    private final Map<Function, Map<Analysis<?>, Object>> results = new IdentityHashMap<>();
+    private int computed = 0;
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Analysis<T> analysis, Function function) {
+        Map<Analysis<?>, Object> cached = results.get(function);
+        if (cached == null) results.put(function, cached = new HashMap<>());
+        Object result = cached.get(analysis);
+        if (result == null) {
+            result = analysis.compute(function, this);
+            cached.put(analysis, result);
+            computed++;
+        }
+        return (T) result;
+    }
+
+    /**
+     * @return the result of analysis if it is cached, else null.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getCached(Analysis<T> analysis, Function function) {
+        Map<Analysis<?>, Object> cached = results.get(function);
+        return cached == null ? null : (T) cached.get(analysis);
+    }
+
+    /**
+     * Drop the results for function but those of preserved analyses which depend
+     * only on analyses kept, since function changed.
+     */
+    public void invalidate(Function function, Set<Analysis<?>> preserved) {
+        Map<Analysis<?>, Object> cached = results.get(function);
+        if (cached == null) return;
+        List<Analysis<?>> dropped = new ArrayList<>();
+        for (Analysis<?> analysis : cached.keySet()) {
+            if (!isKept(analysis, preserved)) dropped.add(analysis);
+        }
+        for (Analysis<?> analysis : dropped) cached.remove(analysis);
+    }
+
+    private static boolean isKept(Analysis<?> analysis, Set<Analysis<?>> preserved) {
+        if (!preserved.contains(analysis)) return false;
+        for (Analysis<?> dependency : analysis.getDependencies()) {
+            if (!isKept(dependency, preserved)) return false;
+        }
+        return true;
+    }
+
+    public void clear() { results.clear(); }
+
+    /**
+     * @return the count of results computed so far, those cached and those dropped.
+     */
+    public int getComputed() { return computed; }
+}
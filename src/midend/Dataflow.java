@@ -0,0 +1,170 @@
+package midend;
+
+import midend.mir.BasicBlock;
+import midend.mir.Function;
+import midend.mir.Module;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A dataflow problem over the blocks of a function, solved on its FlowGraph.
+ * Facts of type T form a lattice given by top() and meet(), and each block maps
+ * the facts at one end of it to those at the other by transfer(), from entry to
+ * exit for a forward problem and from exit to entry for a backward one.
+ * Blocks are visited in reverse post-order, or post-order if backward, so that
+ * facts mostly reach a block before it is visited, and a block is visited again
+ * only when what flows into it changed. Blocks unreachable from the entry are
+ * left out. Facts are never changed once given to or returned by a method here,
+ * so that they may be shared; a problem keeps no state of its own either, and
+ * solve(Module, ForkJoinPool) solves functions at once on many threads.
+ * @param <T> the facts.
+ */
+public abstract class Dataflow<T> {
+    public enum Direction { FORWARD, BACKWARD }
+
+    private final Direction direction;
+
+    protected Dataflow(Direction direction) {
+        this.direction = direction;
+    }
+
+    public Direction getDirection() { return direction; }
+
+    /**
+     * @return the facts nothing has flowed into yet, such that meet(top(), x) is x.
+     */
+    protected abstract T top();
+
+    /**
+     * @return the facts at the entry of function if forward, else at the exits of it.
+     */
+    protected abstract T boundary(Function function);
+
+    /**
+     * @return the facts where the flows of a and b join.
+     */
+    protected abstract T meet(T a, T b);
+
+    /**
+     * @param facts at the entry of block if forward, else at its exit.
+     * @return the facts at the other end of block.
+     */
+    protected abstract T transfer(BasicBlock block, T facts);
+
+    protected boolean same(T a, T b) { return a.equals(b); }
+
+    /**
+     * Facts at the entry and exit of each block reachable in a function, by the
+     * index of the block in its FlowGraph.
+     */
+    public static class Result<T> {
+        private final FlowGraph flowGraph;
+        private final Object[] in;
+        private final Object[] out;
+        private final int visits;
+
+        private Result(FlowGraph flowGraph, Object[] in, Object[] out, int visits) {
+            this.flowGraph = flowGraph;
+            this.in = in;
+            this.out = out;
+            this.visits = visits;
+        }
+
+        public FlowGraph getFlowGraph() { return flowGraph; }
+
+        /**
+         * @return the facts at the entry of block, or null if it is unreachable.
+         */
+        @SuppressWarnings("unchecked")
+        public T getIn(BasicBlock block) {
+            int index = flowGraph.indexOf(block);
+            return index < 0 ? null : (T) in[index];
+        }
+
+        /**
+         * @return the facts at the exit of block, or null if it is unreachable.
+         */
+        @SuppressWarnings("unchecked")
+        public T getOut(BasicBlock block) {
+            int index = flowGraph.indexOf(block);
+            return index < 0 ? null : (T) out[index];
+        }
+
+        /**
+         * @return the count of transfers, at least the count of blocks.
+         */
+        public int getVisits() { return visits; }
+    }
+
+    public Result<T> solve(Function function) {
+        return solve(function.getFlowGraph(), function);
+    }
+
+    /**
+     * Solve each function of module with blocks, as tasks on pool if it is not null.
+     * Tasks only build and read the flow graph of their own function.
+     * @return results by function, in the order of module.
+     */
+    public Map<Function, Result<T>> solve(Module module, ForkJoinPool pool) {
+        Map<Function, Result<T>> results = new LinkedHashMap<>();
+        List<Function> functions = new ArrayList<>();
+        for (Function function : module.getFunctionList()) {
+            if (!function.getBBlockList().isEmpty()) functions.add(function);
+        }
+        if (pool == null || pool.getParallelism() <= 1 || functions.size() <= 1) {
+            for (Function function : functions) results.put(function, solve(function));
+            return results;
+        }
+        List<ForkJoinTask<Result<T>>> tasks = new ArrayList<>();
+        for (Function function : functions) tasks.add(pool.submit(() -> solve(function)));
+        for (int i = 0, size = tasks.size(); i < size; i++) results.put(functions.get(i), tasks.get(i).join());
+        return results;
+    }
+
+    /**
+     * @param graph the flow graph of function, as got from an AnalysisManager.
+     */
+    public Result<T> solve(FlowGraph graph, Function function) {
+        int n = graph.getReversePostOrder().size();
+        boolean forward = direction == Direction.FORWARD;
+        // Facts flowing into and out of each block, in the direction of the problem.
+        Object[] into = new Object[n];
+        Object[] from = new Object[n];
+        T top = top(), boundary = boundary(function);
+        for (int i = 0; i < n; i++) from[i] = top;
+
+        // Blocks to visit by their order, each visited in a sweep through that order.
+        BitSet pending = new BitSet(n);
+        pending.set(0, n);
+        int next = 0, visits = 0;
+        while (!pending.isEmpty()) {
+            int position = pending.nextSetBit(next);
+            if (position < 0) position = pending.nextSetBit(0);
+            pending.clear(position);
+            next = position + 1;
+            int index = forward ? position : n - 1 - position;
+
+            int[] sources = forward ? graph.predsOf(index) : graph.succsOf(index);
+            boolean isBoundary = forward ? index == 0 : graph.succsOf(index).length == 0;
+            T facts = isBoundary ? boundary : top;
+            for (int source : sources) facts = meet(facts, factsAt(from, source));
+            into[index] = facts;
+            T result = transfer(graph.blockAt(index), facts);
+            visits++;
+            if (same(result, factsAt(from, index))) continue;
+            from[index] = result;
+            for (int target : forward ? graph.succsOf(index) : graph.predsOf(index))
+                pending.set(forward ? target : n - 1 - target);
+        }
+        return forward ? new Result<T>(graph, into, from, visits) : new Result<T>(graph, from, into, visits);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T factsAt(Object[] facts, int index) { return (T) facts[index]; }
+}
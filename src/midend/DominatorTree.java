@@ -0,0 +1,162 @@
+package midend;
+
+import midend.mir.BasicBlock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dominators of the blocks of a function reachable from its entry, found by the
+ * iterative algorithm of Cooper, Harvey and Kennedy over the reverse post-order of
+ * its FlowGraph, with the dominator tree and dominance frontiers. Blocks are given
+ * by their indices in the reverse post-order, where a block has a larger index than
+ * its dominators, or as blocks. Got from FlowGraph.getDominatorTree().
+ */
+public class DominatorTree {
+    private final FlowGraph flowGraph;
+    private final int[] idom;
+    private final int[][] children;
+    private final int[][] frontiers;
+    /** Numbers of blocks in a preorder walk of the tree, and the largest of the blocks
+     * each dominates, so that dominance is found by comparing them.
+     */
+    private final int[] enter;
+    private final int[] exit;
+
+    DominatorTree(FlowGraph flowGraph) {
+        this.flowGraph = flowGraph;
+        int n = flowGraph.getReversePostOrder().size();
+        idom = new int[n];
+        children = new int[n][];
+        frontiers = new int[n][];
+        enter = new int[n];
+        exit = new int[n];
+        if (n == 0) return;
+        dominators();
+        tree();
+        frontiers();
+    }
+
+    private void dominators() {
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 1; b < idom.length; b++) {
+                int newIdom = -1;
+                for (int p : flowGraph.predsOf(b)) {
+                    if (idom[p] < 0) continue;
+                    newIdom = newIdom < 0 ? p : intersect(p, newIdom);
+                }
+                if (idom[b] != newIdom) {
+                    idom[b] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) a = idom[a];
+            while (b > a) b = idom[b];
+        }
+        return a;
+    }
+
+    private void tree() {
+        int n = idom.length;
+        int[] count = new int[n];
+        for (int b = 1; b < n; b++) count[idom[b]]++;
+        for (int b = 0; b < n; b++) children[b] = new int[count[b]];
+        Arrays.fill(count, 0);
+        for (int b = 1; b < n; b++) children[idom[b]][count[idom[b]]++] = b;
+
+        // Blocks are entered when pushed as they are, and left when pushed negated, less one.
+        int[] stack = new int[2 * n];
+        int top = 0, number = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int b = stack[--top];
+            if (b < 0) {
+                exit[-b - 1] = number - 1;
+                continue;
+            }
+            enter[b] = number++;
+            stack[top++] = -b - 1;
+            for (int child : children[b]) stack[top++] = child;
+        }
+    }
+
+    /**
+     * A block is in the frontiers of the blocks from its predecessors up to its
+     * immediate dominator, which it is not.
+     */
+    private void frontiers() {
+        List<List<Integer>> lists = new ArrayList<>();
+        for (int b = 0; b < idom.length; b++) lists.add(new ArrayList<>());
+        for (int b = 0; b < idom.length; b++) {
+            int[] preds = flowGraph.predsOf(b);
+            if (preds.length < 2) continue;
+            for (int p : preds) {
+                for (int runner = p; runner != idom[b]; runner = idom[runner]) {
+                    List<Integer> frontier = lists.get(runner);
+                    if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != b) frontier.add(b);
+                }
+            }
+        }
+        for (int b = 0; b < idom.length; b++) {
+            frontiers[b] = new int[lists.get(b).size()];
+            for (int i = 0; i < frontiers[b].length; i++) frontiers[b][i] = lists.get(b).get(i);
+        }
+    }
+
+    public FlowGraph getFlowGraph() { return flowGraph; }
+
+    /**
+     * @return the index of the immediate dominator of the block at index, which is
+     *  itself for the entry.
+     */
+    public int idomOf(int index) { return idom[index]; }
+
+    public int[] childrenOf(int index) { return children[index]; }
+
+    public int[] frontierOf(int index) { return frontiers[index]; }
+
+    /**
+     * @return if the block at a dominates the block at b, or is it.
+     */
+    public boolean dominates(int a, int b) { return enter[a] <= enter[b] && exit[b] <= exit[a]; }
+
+    /**
+     * @return the immediate dominator of block, or null for the entry and unreachable blocks.
+     */
+    public BasicBlock getIdom(BasicBlock block) {
+        int index = flowGraph.indexOf(block);
+        return index <= 0 ? null : flowGraph.blockAt(idom[index]);
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) { return blocksOf(children, block); }
+
+    public List<BasicBlock> getFrontier(BasicBlock block) { return blocksOf(frontiers, block); }
+
+    /**
+     * @return if a dominates b, or is it. Unreachable blocks dominate nothing and
+     *  are dominated by nothing.
+     */
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        int x = flowGraph.indexOf(a), y = flowGraph.indexOf(b);
+        return x >= 0 && y >= 0 && dominates(x, y);
+    }
+
+    private List<BasicBlock> blocksOf(int[][] indices, BasicBlock block) {
+        int index = flowGraph.indexOf(block);
+        if (index < 0) return Collections.emptyList();
+        List<BasicBlock> blocks = new ArrayList<>(indices[index].length);
+        for (int i : indices[index]) blocks.add(flowGraph.blockAt(i));
+        return blocks;
+    }
+}
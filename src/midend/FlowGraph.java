@@ -2,18 +2,43 @@ package midend;
 
 import midend.mir.BasicBlock;
 import midend.mir.Function;
+import midend.mir.Instruction;
 import midend.mir.Module;
 import midend.mir.Instruction.BranchInst;
 import utils.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
+/**
+ * Successors and predecessors of blocks, of a whole module, or of a function.
+ * The graph of a function also orders the blocks reachable from its entry in
+ * reverse post-order, where they have indices, and finds their dominators on
+ * demand. It is cached by Function.getFlowGraph() until the blocks of the
+ * function, or where they branch to, change.
+ */
 public class FlowGraph {
     private final HashMap<BasicBlock, ArrayList<BasicBlock>> nextBlocks = new HashMap<>();
     private final HashMap<BasicBlock, ArrayList<BasicBlock>> prevBlocks = new HashMap<>();
 
+    /* Of the graph of a function only, where blocks are numbered by their positions in it. */
+    private Function function = null;
+    private int modCount;
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private HashMap<BasicBlock, Integer> positionOf;
+    private int[][] nextPositions;
+    private int[][] prevPositions;
+    private int[] indexAt;
+    private final List<BasicBlock> reversePostOrder = new ArrayList<>();
+    /** Indices of the successors and predecessors reachable from the entry, by index.
+     */
+    private int[][] succs;
+    private int[][] preds;
+    private DominatorTree dominatorTree = null;
+
     public static FlowGraph getFlowGraph(Module module) {
         FlowGraph flowGraph = new FlowGraph();
         for (Function function : module.getFunctionList()) {
@@ -28,6 +53,59 @@ public class FlowGraph {
         return flowGraph;
     }
 
+    /**
+     * Build the graph of function. Prefer Function.getFlowGraph(), which caches it.
+     */
+    public static FlowGraph of(Function function) {
+        FlowGraph flowGraph = new FlowGraph();
+        flowGraph.function = function;
+        flowGraph.modCount = function.getBBlockList().getModCount();
+        int n = function.getBBlockList().size();
+        flowGraph.positionOf = new HashMap<>(n * 4 / 3 + 1);
+        for (BasicBlock block : function.getBBlockList()) {
+            flowGraph.positionOf.put(block, flowGraph.blocks.size());
+            flowGraph.blocks.add(block);
+        }
+        flowGraph.nextPositions = new int[n][];
+        int[] prevCount = new int[n];
+        for (int i = 0; i < n; i++) {
+            List<BasicBlock> successors = successorsOf(flowGraph.blocks.get(i));
+            int[] next = flowGraph.nextPositions[i] = new int[successors.size()];
+            for (int j = 0; j < next.length; j++) {
+                next[j] = flowGraph.positionOf.get(successors.get(j));
+                prevCount[next[j]]++;
+            }
+        }
+        flowGraph.prevPositions = transpose(flowGraph.nextPositions, prevCount);
+        flowGraph.order();
+        return flowGraph;
+    }
+
+    /**
+     * @param count the count of edges into each node.
+     * @return the edges of graph, given by the nodes they leave, reversed.
+     */
+    private static int[][] transpose(int[][] graph, int[] count) {
+        int[][] reversed = new int[graph.length][];
+        for (int i = 0; i < graph.length; i++) reversed[i] = new int[count[i]];
+        int[] filled = new int[graph.length];
+        for (int i = 0; i < graph.length; i++) {
+            for (int j : graph[i]) reversed[j][filled[j]++] = i;
+        }
+        return reversed;
+    }
+
+    /**
+     * @return the blocks block branches to, once each.
+     */
+    public static List<BasicBlock> successorsOf(BasicBlock block) {
+        if (!(block.getTerminator() instanceof BranchInst)) return Collections.emptyList();
+        BranchInst inst = (BranchInst) block.getTerminator();
+        if (inst.getCond() == null || inst.getThenBlock() == inst.getElseBlock())
+            return Collections.singletonList(inst.getThenBlock());
+        return Arrays.asList(inst.getThenBlock(), inst.getElseBlock());
+    }
+
     private void addToGraph(Pair<BasicBlock, BasicBlock> pair) {
         BasicBlock f = pair.getFirst(), s = pair.getSecond();
         if (!nextBlocks.containsKey(f)) nextBlocks.put(f, new ArrayList<>());
@@ -36,11 +114,115 @@ public class FlowGraph {
         prevBlocks.get(s).add(f);
     }
 
+    /**
+     * Number the blocks reachable from the entry in reverse post-order, by a depth
+     * first search kept on a stack, as functions may have thousands of blocks.
+     */
+    private void order() {
+        int n = blocks.size();
+        indexAt = new int[n];
+        Arrays.fill(indexAt, -1);
+        int[] postOrder = new int[n], stack = new int[n], next = new int[n];
+        int count = 0, top = 0;
+        if (n > 0) {
+            // Positions are marked visited with -2 until numbered.
+            indexAt[0] = -2;
+            stack[top++] = 0;
+        }
+        while (top > 0) {
+            int block = stack[top - 1];
+            if (next[block] < nextPositions[block].length) {
+                int successor = nextPositions[block][next[block]++];
+                if (indexAt[successor] == -1) {
+                    indexAt[successor] = -2;
+                    stack[top++] = successor;
+                }
+            } else {
+                postOrder[count++] = block;
+                top--;
+            }
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            indexAt[postOrder[i]] = reversePostOrder.size();
+            reversePostOrder.add(blocks.get(postOrder[i]));
+        }
+        succs = new int[count][];
+        int[] predCount = new int[count];
+        for (int b = 0; b < count; b++) {
+            int[] targets = nextPositions[postOrder[count - 1 - b]];
+            succs[b] = new int[targets.length];
+            for (int i = 0; i < targets.length; i++) {
+                succs[b][i] = indexAt[targets[i]];
+                predCount[succs[b][i]]++;
+            }
+        }
+        preds = transpose(succs, predCount);
+    }
+
     public List<BasicBlock> nextOf(BasicBlock block) {
+        if (function != null) return blocksAt(nextPositions, block);
         return nextBlocks.getOrDefault(block, null);
     }
 
     public List<BasicBlock> prevOf(BasicBlock block) {
+        if (function != null) return blocksAt(prevPositions, block);
         return prevBlocks.getOrDefault(block, null);
     }
+
+    private List<BasicBlock> blocksAt(int[][] graph, BasicBlock block) {
+        Integer position = positionOf.get(block);
+        if (position == null) return null;
+        List<BasicBlock> result = new ArrayList<>(graph[position].length);
+        for (int i : graph[position]) result.add(blocks.get(i));
+        return result;
+    }
+
+    /**
+     * @return the blocks reachable from the entry of the function, in reverse post-order.
+     */
+    public List<BasicBlock> getReversePostOrder() { return reversePostOrder; }
+
+    /**
+     * @return the index of block in the reverse post-order, or -1 if it is unreachable.
+     */
+    public int indexOf(BasicBlock block) {
+        Integer position = positionOf.get(block);
+        return position == null ? -1 : indexAt[position];
+    }
+
+    public BasicBlock blockAt(int index) { return reversePostOrder.get(index); }
+
+    public int[] succsOf(int index) { return succs[index]; }
+
+    /**
+     * @return the indices of the predecessors of the block at index which are reachable.
+     */
+    public int[] predsOf(int index) { return preds[index]; }
+
+    public DominatorTree getDominatorTree() {
+        if (dominatorTree == null) dominatorTree = new DominatorTree(this);
+        return dominatorTree;
+    }
+
+    /**
+     * @return if blocks were added to or removed from the function, or branch elsewhere,
+     *  since the graph was built.
+     */
+    public boolean isStale() {
+        if (function.getBBlockList().getModCount() != modCount) return true;
+        int position = 0;
+        for (BasicBlock block : function.getBBlockList()) {
+            int[] next = nextPositions[position++];
+            Instruction terminator = block.getTerminator();
+            if (!(terminator instanceof BranchInst)) {
+                if (next.length != 0) return true;
+                continue;
+            }
+            BranchInst inst = (BranchInst) terminator;
+            if (next.length == 0 || blocks.get(next[0]) != inst.getThenBlock()) return true;
+            boolean once = inst.getCond() == null || inst.getThenBlock() == inst.getElseBlock();
+            if (once ? next.length != 1 : next.length != 2 || blocks.get(next[1]) != inst.getElseBlock()) return true;
+        }
+        return false;
+    }
 }
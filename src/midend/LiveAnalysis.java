@@ -1,64 +1,458 @@
 package midend;
 
 import midend.mir.BasicBlock;
+import midend.mir.ConstantInt;
 import midend.mir.Function;
+import midend.mir.GlobalValue;
+import midend.mir.Initial;
 import midend.mir.Instruction;
 import midend.mir.Instruction.*;
 import midend.mir.Value;
 import utils.inodelist.INode;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Values live into and out of each block of a function, and out of each of its
+ * instructions. Values are those instructions define, and params, numbered
+ * densely in reverse post-order of where they are defined, so that sets of them
+ * are bit sets, of the words with numbers in them only. Constants, globals and
+ * blocks are not values here.
+ * Sets of blocks are solved by a worklist of blocks in post-order, which then
+ * sees successors before predecessors but for back edges, and a block comes back
+ * only when what is live into a successor grows. Values read only in the block
+ * defining them are left out of these. Sets of instructions are found for a
+ * block when asked for, walking it back from what is live out of it, and kept for
+ * the last block asked for only.
+ * A phi reads its value for a predecessor at the end of that predecessor, so it is
+ * live out of the predecessor only. The instructions of getParamFetchList() are
+ * taken to begin the entry block.
+ */
 public class LiveAnalysis {
-    private final HashMap<BasicBlock, HashSet<Value>> liveIn = new HashMap<>();
-    private final HashMap<BasicBlock, HashSet<Value>> liveOut = new HashMap<>();
-    private final HashMap<BasicBlock, HashSet<Value>> liveUse = new HashMap<>();
-    private final HashMap<BasicBlock, HashSet<Value>> liveDef = new HashMap<>();
-
-    private void liveUseDef(BasicBlock block) {
-        if (!liveUse.containsKey(block)) liveUse.put(block, new HashSet<>());
-        if (!liveDef.containsKey(block)) liveDef.put(block, new HashSet<>());
-        for (INode inst : block.getInstList()) {
-            if (inst instanceof AllocInst) {
-                liveDef.get(block).add(((AllocInst) inst).getValue());
-            } else if (inst instanceof MemoryInst) {
-                MemoryInst memoryInst = (MemoryInst) inst;
-                if (memoryInst.getFlag() == 0) {
-                    liveDef.get(block).add(memoryInst.getTo());
+    private final List<Value> values = new ArrayList<>();
+    private final Map<Value, Integer> numbers = new IdentityHashMap<>();
+    /** If each value is read in a block other than the one defining it, or by a phi.
+     */
+    private boolean[] crossBlock;
+
+    /** Blocks in post-order of those reachable, then the others in their order.
+     */
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private final Map<BasicBlock, Integer> blockIndex = new IdentityHashMap<>();
+    private int[][] succs;
+    private int[][] preds;
+
+    /** Instructions of all blocks one after another, those of block b from start[b]
+     * up to start[b + 1].
+     */
+    private final List<Instruction> insts = new ArrayList<>();
+    private final Map<Instruction, Integer> instIndex = new IdentityHashMap<>();
+    private int[] start;
+    private int[] blockAt;
+
+    /** Numbers of values read before they are defined in each block, those defined,
+     * and those read by phis of successors for the block, crossBlock values only.
+     */
+    private int[][] uses;
+    private int[][] defs;
+    private int[][] phiUses;
+    private Bits[] liveIn;
+    private Bits[] liveOut;
+
+    private int walked = -1;
+    private int[][] walkedLiveOut = null;
+
+    /**
+     * A set of numbers kept as the words of a bit set which have numbers in them, by
+     * the index of each word in increasing order, as a function may have many values
+     * live somewhere, with few live at once.
+     */
+    static class Bits {
+        private int[] indices;
+        private long[] words;
+        private int size = 0;
+
+        Bits() { this(2); }
+
+        private Bits(int capacity) {
+            indices = new int[capacity];
+            words = new long[capacity];
+        }
+
+        Bits copy() {
+            Bits bits = new Bits(Math.max(size, 2));
+            System.arraycopy(indices, 0, bits.indices, 0, size);
+            System.arraycopy(words, 0, bits.words, 0, size);
+            bits.size = size;
+            return bits;
+        }
+
+        boolean get(int number) {
+            int i = Arrays.binarySearch(indices, 0, size, number >>> 6);
+            return i >= 0 && (words[i] & 1L << number) != 0;
+        }
+
+        void set(int number) {
+            int i = Arrays.binarySearch(indices, 0, size, number >>> 6);
+            if (i < 0) {
+                i = -i - 1;
+                if (size == indices.length) {
+                    indices = Arrays.copyOf(indices, size * 2);
+                    words = Arrays.copyOf(words, size * 2);
+                }
+                System.arraycopy(indices, i, indices, i + 1, size - i);
+                System.arraycopy(words, i, words, i + 1, size - i);
+                indices[i] = number >>> 6;
+                words[i] = 0;
+                size++;
+            }
+            words[i] |= 1L << number;
+        }
+
+        void clear(int number) {
+            int i = Arrays.binarySearch(indices, 0, size, number >>> 6);
+            if (i < 0) return;
+            words[i] &= ~(1L << number);
+            if (words[i] != 0) return;
+            System.arraycopy(indices, i + 1, indices, i, size - i - 1);
+            System.arraycopy(words, i + 1, words, i, size - i - 1);
+            size--;
+        }
+
+        void or(Bits other) {
+            int count = size;
+            for (int i = 0, j = 0; j < other.size; j++) {
+                while (i < size && indices[i] < other.indices[j]) i++;
+                if (i == size || indices[i] != other.indices[j]) count++;
+            }
+            if (count == size) {
+                for (int i = 0, j = 0; j < other.size; j++) {
+                    while (indices[i] < other.indices[j]) i++;
+                    words[i] |= other.words[j];
+                }
+                return;
+            }
+            int[] newIndices = new int[count];
+            long[] newWords = new long[count];
+            int i = 0, j = 0, k = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || i < size && indices[i] < other.indices[j]) {
+                    newIndices[k] = indices[i];
+                    newWords[k++] = words[i++];
+                } else if (i == size || other.indices[j] < indices[i]) {
+                    newIndices[k] = other.indices[j];
+                    newWords[k++] = other.words[j++];
                 } else {
-                    liveUse.get(block).add(memoryInst.getFrom());
+                    newIndices[k] = indices[i];
+                    newWords[k++] = words[i++] | other.words[j++];
                 }
             }
+            indices = newIndices;
+            words = newWords;
+            size = count;
         }
+
+        boolean same(Bits other) {
+            if (size != other.size) return false;
+            for (int i = 0; i < size; i++) {
+                if (indices[i] != other.indices[i] || words[i] != other.words[i]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return the numbers in increasing order.
+         */
+        int[] toArray() {
+            int count = 0;
+            for (int i = 0; i < size; i++) count += Long.bitCount(words[i]);
+            int[] numbers = new int[count];
+            count = 0;
+            for (int i = 0; i < size; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    numbers[count++] = indices[i] * 64 + Long.numberOfTrailingZeros(word);
+            }
+            return numbers;
+        }
+    }
+
+    public LiveAnalysis(Function function, FlowGraph flowGraph) {
+        order(function, flowGraph);
+        number();
+        useDef();
+        solve();
+    }
+
+    public static LiveAnalysis of(Function function) {
+        return new LiveAnalysis(function, function.getFlowGraph());
+    }
+
+    private static boolean isValue(Value value) {
+        return value != null && !(value instanceof ConstantInt) && !(value instanceof GlobalValue)
+                && !(value instanceof BasicBlock) && !(value instanceof Initial);
     }
 
-    private void liveInOut(FlowGraph flowGraph, Function function) {
+    private void order(Function function, FlowGraph flowGraph) {
+        List<BasicBlock> reversePostOrder = flowGraph.getReversePostOrder();
+        for (int i = reversePostOrder.size() - 1; i >= 0; i--) addBlock(reversePostOrder.get(i));
         for (BasicBlock block : function.getBBlockList()) {
-            liveIn.put(block, new HashSet<>());
-            liveOut.put(block, new HashSet<>());
-        }
-        boolean flag = false;
-        do {
-            BasicBlock block = function.getBBlockList().getEnd();
-            while (block != null) {
-                int size = liveOut.get(block).size();
-                for (BasicBlock nextBlock : flowGraph.nextOf(block)) {
-                    liveOut.get(block).addAll(liveIn.get(nextBlock));
+            if (!blockIndex.containsKey(block)) addBlock(block);
+        }
+        int n = blocks.size();
+        succs = new int[n][];
+        int[] predCount = new int[n];
+        for (int b = 0; b < n; b++) {
+            List<BasicBlock> successors = FlowGraph.successorsOf(blocks.get(b));
+            succs[b] = new int[successors.size()];
+            for (int i = 0; i < successors.size(); i++) {
+                succs[b][i] = blockIndex.get(successors.get(i));
+                predCount[succs[b][i]]++;
+            }
+        }
+        preds = new int[n][];
+        for (int b = 0; b < n; b++) preds[b] = new int[predCount[b]];
+        int[] filled = new int[n];
+        for (int b = 0; b < n; b++) {
+            for (int s : succs[b]) preds[s][filled[s]++] = b;
+        }
+
+        BasicBlock entry = function.getBBlockList().getBegin();
+        start = new int[n + 1];
+        for (int b = 0; b < n; b++) {
+            BasicBlock block = blocks.get(b);
+            start[b] = insts.size();
+            if (block == entry) {
+                for (INode inst : function.getParamFetchList()) {
+                    if (inst instanceof Instruction) addInst((Instruction) inst);
                 }
-                if (size != liveOut.get(block).size()) flag = true;
-                for (Value value : liveOut.get(block)) {
-                    if (!liveDef.get(block).contains(value)) {
-                        liveIn.get(block).add(value);
+            }
+            for (INode inst : block.getInstList()) {
+                if (inst instanceof Instruction) addInst((Instruction) inst);
+            }
+            if (block.getTerminator() != null) addInst(block.getTerminator());
+        }
+        start[n] = insts.size();
+        blockAt = new int[insts.size()];
+        for (int b = 0; b < n; b++) Arrays.fill(blockAt, start[b], start[b + 1], b);
+    }
+
+    private void addBlock(BasicBlock block) {
+        blockIndex.put(block, blocks.size());
+        blocks.add(block);
+    }
+
+    private void addInst(Instruction inst) {
+        instIndex.put(inst, insts.size());
+        insts.add(inst);
+    }
+
+    /**
+     * Number values as they are defined in reverse post-order, and values never
+     * defined as they are first read.
+     */
+    private void number() {
+        int[] defBlock = new int[insts.size() + 16];
+        for (int b = blocks.size() - 1; b >= 0; b--) {
+            for (int i = start[b]; i < start[b + 1]; i++) {
+                Value result = insts.get(i).getResult();
+                if (!isValue(result) || numbers.containsKey(result)) continue;
+                numbers.put(result, values.size());
+                defBlock[values.size()] = b;
+                values.add(result);
+            }
+        }
+        crossBlock = new boolean[defBlock.length];
+        for (int b = blocks.size() - 1; b >= 0; b--) {
+            for (int i = start[b]; i < start[b + 1]; i++) {
+                Instruction inst = insts.get(i);
+                for (Value operand : inst.getOperandValues()) {
+                    if (!isValue(operand)) continue;
+                    Integer number = numbers.get(operand);
+                    if (number == null) {
+                        number = values.size();
+                        numbers.put(operand, number);
+                        values.add(operand);
+                        if (number >= crossBlock.length) {
+                            defBlock = Arrays.copyOf(defBlock, number * 2);
+                            crossBlock = Arrays.copyOf(crossBlock, number * 2);
+                        }
+                        defBlock[number] = -1;
+                    }
+                    if (defBlock[number] != b || inst instanceof PhiInst) crossBlock[number] = true;
+                }
+            }
+        }
+    }
+
+    private void useDef() {
+        int n = blocks.size();
+        uses = new int[n][];
+        defs = new int[n][];
+        List<List<Integer>> phiUseLists = new ArrayList<>(n);
+        for (int b = 0; b < n; b++) phiUseLists.add(null);
+        for (int b = 0; b < n; b++) {
+            Bits used = new Bits(), defined = new Bits();
+            for (int i = start[b]; i < start[b + 1]; i++) {
+                Instruction inst = insts.get(i);
+                if (inst instanceof PhiInst) {
+                    for (Map.Entry<BasicBlock, Value> incoming : ((PhiInst) inst).getIncomings().entrySet()) {
+                        Integer pred = blockIndex.get(incoming.getKey());
+                        int value = crossBlockNumberOf(incoming.getValue());
+                        if (pred == null || value < 0) continue;
+                        if (phiUseLists.get(pred) == null) phiUseLists.set(pred, new ArrayList<>());
+                        phiUseLists.get(pred).add(value);
+                    }
+                } else {
+                    for (Value operand : inst.getOperandValues()) {
+                        int value = crossBlockNumberOf(operand);
+                        if (value >= 0 && !defined.get(value)) used.set(value);
                     }
                 }
-                liveIn.get(block).addAll(liveUse.get(block));
-                block = (BasicBlock) block.getPrev();
+                int result = crossBlockNumberOf(inst.getResult());
+                if (result >= 0) defined.set(result);
             }
-        } while (flag);
+            uses[b] = used.toArray();
+            defs[b] = defined.toArray();
+        }
+        phiUses = new int[n][];
+        for (int b = 0; b < n; b++) {
+            List<Integer> list = phiUseLists.get(b);
+            phiUses[b] = new int[list == null ? 0 : list.size()];
+            for (int i = 0; i < phiUses[b].length; i++) phiUses[b][i] = list.get(i);
+        }
     }
 
-    public HashMap<BasicBlock, HashSet<Value>> getLiveIn() { return liveIn; }
+    /**
+     * @return the number of value if it is read in a block other than its own, else -1.
+     */
+    private int crossBlockNumberOf(Value value) {
+        int number = numberOf(value);
+        return number >= 0 && crossBlock[number] ? number : -1;
+    }
+
+    private void solve() {
+        int n = blocks.size();
+        liveIn = new Bits[n];
+        liveOut = new Bits[n];
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        for (int b = 0; b < n; b++) {
+            liveIn[b] = new Bits();
+            for (int value : uses[b]) liveIn[b].set(value);
+            liveOut[b] = new Bits();
+            for (int value : phiUses[b]) liveOut[b].set(value);
+            queue[b] = b;
+            queued[b] = true;
+        }
+        // A ring of blocks to visit, each in it at most once.
+        int head = 0, size = n;
+        while (size > 0) {
+            int b = queue[head];
+            head = (head + 1) % n;
+            size--;
+            queued[b] = false;
+            Bits out = liveOut[b];
+            for (int s : succs[b]) out.or(liveIn[s]);
+            Bits in = out.copy();
+            for (int value : defs[b]) in.clear(value);
+            for (int value : uses[b]) in.set(value);
+            if (in.same(liveIn[b])) continue;
+            liveIn[b] = in;
+            for (int p : preds[b]) {
+                if (queued[p]) continue;
+                queued[p] = true;
+                queue[(head + size) % n] = p;
+                size++;
+            }
+        }
+    }
 
-    public HashMap<BasicBlock, HashSet<Value>> getLiveOut() { return liveOut; }
+    /**
+     * @return the number of value, or -1 if it is not a value here.
+     */
+    public int numberOf(Value value) {
+        Integer number = value == null ? null : numbers.get(value);
+        return number == null ? -1 : number;
+    }
+
+    public Value getValue(int number) { return values.get(number); }
+
+    public int getValueCount() { return values.size(); }
+
+    /**
+     * @return numbers of the values live into block in increasing order, none if block
+     *  is not in the function.
+     */
+    public int[] getLiveIn(BasicBlock block) {
+        Integer b = blockIndex.get(block);
+        return b == null ? new int[0] : liveIn[b].toArray();
+    }
+
+    public int[] getLiveOut(BasicBlock block) {
+        Integer b = blockIndex.get(block);
+        return b == null ? new int[0] : liveOut[b].toArray();
+    }
+
+    /**
+     * @param inst an instruction of the function, terminators and instructions
+     *  fetching params included.
+     * @return numbers of the values live out of inst in increasing order, not to be
+     *  changed, or null if inst is not in the function.
+     */
+    public int[] getLiveOut(Instruction inst) {
+        Integer index = instIndex.get(inst);
+        if (index == null) return null;
+        int b = blockAt[index];
+        if (walked != b) {
+            walkedLiveOut = walkBack(b);
+            walked = b;
+        }
+        return walkedLiveOut[index - start[b]];
+    }
+
+    public boolean isLiveOut(Instruction inst, Value value) {
+        int[] live = getLiveOut(inst);
+        int number = numberOf(value);
+        return live != null && number >= 0 && Arrays.binarySearch(live, number) >= 0;
+    }
+
+    private int[][] walkBack(int b) {
+        int[][] sets = new int[start[b + 1] - start[b]][];
+        Bits live = liveOut[b].copy();
+        for (int i = start[b + 1] - 1; i >= start[b]; i--) {
+            Instruction inst = insts.get(i);
+            sets[i - start[b]] = live.toArray();
+            int result = numberOf(inst.getResult());
+            if (result >= 0) live.clear(result);
+            if (inst instanceof PhiInst) continue;
+            for (Value operand : inst.getOperandValues()) {
+                int value = numberOf(operand);
+                if (value >= 0) live.set(value);
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * @return the values live into each block, as sets.
+     */
+    public HashMap<BasicBlock, HashSet<Value>> getLiveIn() { return toSets(liveIn); }
+
+    public HashMap<BasicBlock, HashSet<Value>> getLiveOut() { return toSets(liveOut); }
+
+    private HashMap<BasicBlock, HashSet<Value>> toSets(Bits[] sets) {
+        HashMap<BasicBlock, HashSet<Value>> result = new HashMap<>();
+        for (int b = 0; b < blocks.size(); b++) {
+            HashSet<Value> set = new HashSet<>();
+            for (int number : sets[b].toArray()) set.add(values.get(number));
+            result.put(blocks.get(b), set);
+        }
+        return result;
+    }
 }
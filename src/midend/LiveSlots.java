@@ -0,0 +1,61 @@
+package midend;
+
+import midend.mir.BasicBlock;
+import midend.mir.Function;
+import midend.mir.Instruction;
+import midend.mir.Instruction.MemoryInst;
+import midend.mir.Value;
+import utils.inodelist.INode;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Memory live into and out of each block, as the names of the pointers loaded
+ * from before they are stored to: allocas and globals, and the pointers a block
+ * computes to reach into arrays, which are dead above where they are defined.
+ * Mem2Reg places phis only where their variables are live.
+ */
+public class LiveSlots extends Dataflow<Set<String>> {
+    public LiveSlots() {
+        super(Direction.BACKWARD);
+    }
+
+    @Override
+    protected Set<String> top() { return Collections.emptySet(); }
+
+    @Override
+    protected Set<String> boundary(Function function) { return Collections.emptySet(); }
+
+    @Override
+    protected Set<String> meet(Set<String> a, Set<String> b) {
+        if (a.containsAll(b)) return a;
+        if (b.containsAll(a)) return b;
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    /**
+     * Walk block back from facts, copying them when first changed.
+     */
+    @Override
+    protected Set<String> transfer(BasicBlock block, Set<String> facts) {
+        Set<String> live = facts;
+        for (INode node = block.getInstList().getEnd(); node != null; node = node.getPrev()) {
+            Instruction inst = (Instruction) node;
+            MemoryInst memoryInst = inst instanceof MemoryInst ? (MemoryInst) inst : null;
+            Value defined = inst.getResult() != null ? inst.getResult() : memoryInst != null ? memoryInst.getTo() : null;
+            if (defined != null && live.contains(defined.getName())) {
+                if (live == facts) live = new HashSet<>(facts);
+                live.remove(defined.getName());
+            }
+            if (memoryInst != null && memoryInst.getFlag() == 1 && !live.contains(memoryInst.getFrom().getName())) {
+                if (live == facts) live = new HashSet<>(facts);
+                live.add(memoryInst.getFrom().getName());
+            }
+        }
+        return live;
+    }
+}
@@ -0,0 +1,403 @@
+package midend;
+
+import midend.mir.BasicBlock;
+import midend.mir.ConstantInt;
+import midend.mir.Function;
+import midend.mir.Instruction;
+import midend.mir.Instruction.*;
+import midend.mir.Type.IntType;
+import midend.mir.Value;
+import utils.inodelist.INode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Promotes local int variables, and int parameters, from stack slots to SSA
+ * values (mem2reg). A variable is promoted if it is only loaded and stored to.
+ * Phis are placed at the iterated dominance frontiers of the blocks storing to
+ * it, in those it is live into by LiveSlots, then loads are replaced by the
+ * value last stored on the way down the dominator tree, and the allocas and
+ * stores are removed. Phis all of whose values are the same, and phis no
+ * instruction needs, are removed then.
+ * At last edges into blocks with phis from blocks branching elsewhere too are
+ * split, so that the backend copies values to phis only on the way to them.
+ * Unreachable blocks are removed first, so that all blocks have dominators,
+ * which are taken from the FlowGraph of the function.
+ * Promoted values are kept in Function.getPromoted() for the backend.
+ */
+public class Mem2Reg {
+    private final Function function;
+    /** Blocks are referred to by their indices in the reverse post-order of graph.
+     */
+    private final FlowGraph graph;
+    private final DominatorTree tree;
+    private final List<BasicBlock> blocks;
+
+    /** Variables promoted, keyed by the name of their alloca, and their indices.
+     */
+    private final Map<String, Integer> variables = new LinkedHashMap<>();
+    private final List<Value> initials = new ArrayList<>();
+    /** Phis of each block, keyed by the indices of their variables.
+     */
+    private final List<LinkedHashMap<Integer, PhiInst>> phis = new ArrayList<>();
+    private final Map<PhiInst, Integer> variableOf = new HashMap<>();
+    private int phiCount = 0;
+
+    private Mem2Reg(Function function, DominatorTree tree) {
+        this.function = function;
+        this.tree = tree;
+        graph = tree.getFlowGraph();
+        blocks = graph.getReversePostOrder();
+        for (int b = 0; b < blocks.size(); b++) phis.add(new LinkedHashMap<>());
+    }
+
+    /**
+     * Mem2Reg as run by PassManager, with -O1 and up.
+     */
+    public static class Promote extends Pass {
+        @Override
+        public String getName() { return "mem2reg"; }
+
+        @Override
+        public boolean run(Function function, AnalysisManager analyses) {
+            int modCount = function.getBBlockList().getModCount();
+            int promoted = Mem2Reg.run(function, analyses.get(Analysis.DOMINATOR_TREE, function));
+            count("variables promoted", promoted);
+            return promoted > 0 || function.getBBlockList().getModCount() != modCount;
+        }
+    }
+
+    /**
+     * @return the count of variables promoted.
+     */
+    public static int run(Function function) {
+        if (function.getBBlockList().isEmpty()) return 0;
+        return run(function, function.getFlowGraph().getDominatorTree());
+    }
+
+    /**
+     * @param tree the dominator tree of function as it is.
+     * @return the count of variables promoted.
+     */
+    public static int run(Function function, DominatorTree tree) {
+        if (function.getBBlockList().isEmpty()) return 0;
+        Mem2Reg pass = new Mem2Reg(function, tree);
+        pass.removeUnreachable();
+        if (!pass.findVariables()) return 0;
+        pass.placePhis();
+        pass.rename();
+        pass.simplifyPhis();
+        pass.splitEdges();
+        return pass.variables.size();
+    }
+
+    private void removeUnreachable() {
+        List<BasicBlock> unreachable = new ArrayList<>();
+        for (BasicBlock block : function.getBBlockList()) {
+            if (graph.indexOf(block) < 0) unreachable.add(block);
+        }
+        for (BasicBlock block : unreachable) function.getBBlockList().remove(block);
+    }
+
+    /**
+     * Find int allocas only loaded and stored to, with the values they have at the entry.
+     * @return false if there are none.
+     */
+    private boolean findVariables() {
+        Map<String, Value> params = new HashMap<>();
+        for (INode inst : function.getParamFetchList()) {
+            if (inst instanceof MemoryInst) {
+                params.put(((MemoryInst) inst).getTo().getName(), ((MemoryInst) inst).getFrom());
+            }
+        }
+        for (INode inst : function.getParamFetchList()) {
+            if (inst instanceof AllocInst && ((AllocInst) inst).getValue().getType().isInt32Type()) {
+                addVariable(((AllocInst) inst).getValue().getName(), params.get(((AllocInst) inst).getValue().getName()));
+            }
+        }
+        for (BasicBlock block : blocks) {
+            for (INode inst : block.getInstList()) {
+                if (inst instanceof AllocInst && ((AllocInst) inst).getValue().getType().isInt32Type()) {
+                    addVariable(((AllocInst) inst).getValue().getName(), null);
+                }
+            }
+        }
+        List<String> escaped = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            for (Instruction inst : instructions(block)) {
+                for (Value value : inst.getOperandValues()) {
+                    if (value != null && variables.containsKey(value.getName()) && !isAccess(inst, value))
+                        escaped.add(value.getName());
+                }
+            }
+        }
+        for (String name : escaped) variables.remove(name);
+        int index = 0;
+        List<Value> kept = new ArrayList<>();
+        for (Map.Entry<String, Integer> variable : variables.entrySet()) {
+            kept.add(initials.get(variable.getValue()));
+            variable.setValue(index++);
+        }
+        initials.clear();
+        initials.addAll(kept);
+        return !variables.isEmpty();
+    }
+
+    /**
+     * @param initial the value at the entry, or null if it is undefined.
+     */
+    private void addVariable(String name, Value initial) {
+        variables.put(name, initials.size());
+        initials.add(initial == null ? ConstantInt.getZero() : initial);
+    }
+
+    private static boolean isAccess(Instruction inst, Value pointer) {
+        if (!(inst instanceof MemoryInst)) return false;
+        MemoryInst memoryInst = (MemoryInst) inst;
+        return memoryInst.getFlag() == 1 ? memoryInst.getFrom() == pointer
+                : memoryInst.getTo() == pointer && memoryInst.getFrom() != pointer;
+    }
+
+    /**
+     * @return the instructions of block, then its terminator.
+     */
+    private static List<Instruction> instructions(BasicBlock block) {
+        List<Instruction> insts = new ArrayList<>(block.getInstList().size() + 1);
+        for (INode inst : block.getInstList()) insts.add((Instruction) inst);
+        if (block.getTerminator() != null) insts.add(block.getTerminator());
+        return insts;
+    }
+
+    private Integer variableOf(Value pointer) {
+        return pointer == null ? null : variables.get(pointer.getName());
+    }
+
+    private void placePhis() {
+        List<List<Integer>> defBlocks = new ArrayList<>();
+        for (int i = 0; i < variables.size(); i++) defBlocks.add(new ArrayList<>());
+        for (int b = 0; b < blocks.size(); b++) {
+            for (INode inst : blocks.get(b).getInstList()) {
+                if (inst instanceof MemoryInst && ((MemoryInst) inst).getFlag() == 0) {
+                    Integer variable = variableOf(((MemoryInst) inst).getTo());
+                    if (variable != null) {
+                        List<Integer> defs = defBlocks.get(variable);
+                        if (defs.isEmpty() || defs.get(defs.size() - 1) != b) defs.add(b);
+                    }
+                }
+            }
+        }
+        Dataflow.Result<Set<String>> live = new LiveSlots().solve(graph, function);
+        List<String> names = new ArrayList<>(variables.keySet());
+        int[] placed = new int[blocks.size()], queued = new int[blocks.size()];
+        Arrays.fill(placed, -1);
+        Arrays.fill(queued, -1);
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        for (int variable = 0; variable < variables.size(); variable++) {
+            for (int b : defBlocks.get(variable)) {
+                queued[b] = variable;
+                worklist.add(b);
+            }
+            while (!worklist.isEmpty()) {
+                for (int y : tree.frontierOf(worklist.poll())) {
+                    if (placed[y] == variable) continue;
+                    placed[y] = variable;
+                    if (queued[y] != variable) {
+                        queued[y] = variable;
+                        worklist.add(y);
+                    }
+                    // A phi where the variable is dead would only be removed by simplifyPhis().
+                    BasicBlock block = blocks.get(y);
+                    if (!live.getIn(block).contains(names.get(variable))) continue;
+                    PhiInst phi = new PhiInst(block, new Value(IntType.INT32_TYPE, "%phi" + (++phiCount)));
+                    block.getInstList().addFront(phi);
+                    phis.get(y).put(variable, phi);
+                    variableOf.put(phi, variable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace loads by the values last stored along the dominator tree, and fill phis.
+     */
+    private void rename() {
+        List<ArrayDeque<Value>> stacks = new ArrayList<>();
+        for (Value initial : initials) {
+            ArrayDeque<Value> stack = new ArrayDeque<>();
+            stack.push(initial);
+            stacks.add(stack);
+        }
+        IdentityHashMap<Value, Value> replaced = new IdentityHashMap<>();
+        List<List<Integer>> pushed = new ArrayList<>();
+        for (int b = 0; b < blocks.size(); b++) pushed.add(new ArrayList<>());
+        LinkedHashSet<Value> promoted = function.getPromoted();
+
+        // Blocks are entered when pushed as they are, and left when pushed negated, less one.
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(0);
+        while (!work.isEmpty()) {
+            int b = work.pop();
+            if (b < 0) {
+                for (int variable : pushed.get(-b - 1)) stacks.get(variable).pop();
+                continue;
+            }
+            BasicBlock block = blocks.get(b);
+            List<Integer> defined = pushed.get(b);
+            for (Map.Entry<Integer, PhiInst> phi : phis.get(b).entrySet()) {
+                stacks.get(phi.getKey()).push(phi.getValue().getResValue());
+                defined.add(phi.getKey());
+            }
+            for (Instruction inst : instructions(block)) {
+                if (inst instanceof PhiInst) continue;
+                for (Value value : new ArrayList<>(inst.getOperandValues())) {
+                    Value to = replaced.get(value);
+                    if (to != null) inst.replaceOperand(value, to);
+                }
+                if (inst instanceof AllocInst) {
+                    if (variableOf(((AllocInst) inst).getValue()) != null) block.getInstList().remove(inst);
+                } else if (inst instanceof MemoryInst) {
+                    MemoryInst memoryInst = (MemoryInst) inst;
+                    if (memoryInst.getFlag() == 1) {
+                        Integer variable = variableOf(memoryInst.getFrom());
+                        if (variable == null) continue;
+                        Value value = stacks.get(variable).peek();
+                        replaced.put(memoryInst.getTo(), value);
+                        if (!(value instanceof ConstantInt)) promoted.add(value);
+                        block.getInstList().remove(inst);
+                    } else {
+                        Integer variable = variableOf(memoryInst.getTo());
+                        if (variable == null) continue;
+                        stacks.get(variable).push(memoryInst.getFrom());
+                        defined.add(variable);
+                        block.getInstList().remove(inst);
+                    }
+                }
+            }
+            for (int s : graph.succsOf(b)) {
+                for (Map.Entry<Integer, PhiInst> phi : phis.get(s).entrySet()) {
+                    Value value = stacks.get(phi.getKey()).peek();
+                    phi.getValue().addIncoming(block, value);
+                    if (!(value instanceof ConstantInt)) promoted.add(value);
+                }
+            }
+            work.push(-b - 1);
+            for (int child : tree.childrenOf(b)) work.push(child);
+        }
+
+        List<INode> removed = new ArrayList<>();
+        for (INode inst : function.getParamFetchList()) {
+            Value pointer = inst instanceof AllocInst ? ((AllocInst) inst).getValue()
+                    : inst instanceof MemoryInst ? ((MemoryInst) inst).getTo() : null;
+            if (variableOf(pointer) != null) removed.add(inst);
+        }
+        for (INode inst : removed) function.getParamFetchList().remove(inst);
+    }
+
+    /**
+     * Remove phis whose values are all the same but themselves, replacing them by that
+     * value, until there are none, then remove phis not needed by other instructions.
+     */
+    private void simplifyPhis() {
+        IdentityHashMap<Value, Value> replaced = new IdentityHashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 0; b < blocks.size(); b++) {
+                for (PhiInst phi : new ArrayList<>(phis.get(b).values())) {
+                    Value same = null;
+                    boolean trivial = true;
+                    for (Value value : phi.getIncomings().values()) {
+                        value = find(replaced, value);
+                        if (value == phi.getResValue() || value == same) continue;
+                        if (same != null) {
+                            trivial = false;
+                            break;
+                        }
+                        same = value;
+                    }
+                    if (!trivial) continue;
+                    replaced.put(phi.getResValue(), same == null ? ConstantInt.getZero() : same);
+                    removePhi(b, phi);
+                    changed = true;
+                }
+            }
+        }
+
+        // Phis are needed if instructions other than phis read them, or needed phis do.
+        List<PhiInst> needed = new ArrayList<>();
+        IdentityHashMap<Value, PhiInst> phiOf = new IdentityHashMap<>();
+        for (int b = 0; b < blocks.size(); b++) {
+            for (PhiInst phi : phis.get(b).values()) phiOf.put(phi.getResValue(), phi);
+        }
+        IdentityHashMap<PhiInst, Boolean> live = new IdentityHashMap<>();
+        for (BasicBlock block : blocks) {
+            for (Instruction inst : instructions(block)) {
+                for (Value value : new ArrayList<>(inst.getOperandValues())) {
+                    Value to = find(replaced, value);
+                    if (to != value) inst.replaceOperand(value, to);
+                    PhiInst phi = phiOf.get(to);
+                    if (phi != null && !(inst instanceof PhiInst) && live.put(phi, true) == null) needed.add(phi);
+                }
+            }
+        }
+        for (int i = 0; i < needed.size(); i++) {
+            for (Value value : needed.get(i).getIncomings().values()) {
+                PhiInst phi = phiOf.get(value);
+                if (phi != null && live.put(phi, true) == null) needed.add(phi);
+            }
+        }
+        for (int b = 0; b < blocks.size(); b++) {
+            for (PhiInst phi : new ArrayList<>(phis.get(b).values())) {
+                if (!live.containsKey(phi)) removePhi(b, phi);
+            }
+        }
+
+        LinkedHashSet<Value> promoted = new LinkedHashSet<>();
+        for (Value value : function.getPromoted()) {
+            value = find(replaced, value);
+            if (!(value instanceof ConstantInt) && (!phiOf.containsKey(value) || live.containsKey(phiOf.get(value))))
+                promoted.add(value);
+        }
+        for (PhiInst phi : needed) promoted.add(phi.getResValue());
+        function.getPromoted().clear();
+        function.getPromoted().addAll(promoted);
+    }
+
+    private void splitEdges() {
+        for (int b = 0; b < blocks.size(); b++) {
+            if (phis.get(b).isEmpty()) continue;
+            BasicBlock block = blocks.get(b);
+            for (int p : graph.predsOf(b)) {
+                BasicBlock pred = blocks.get(p);
+                BranchInst branch = (BranchInst) pred.getTerminator();
+                if (branch.getCond() == null) continue;
+                BasicBlock edge = new BasicBlock(pred.getName() + "s" + block.getName(), function);
+                edge.setTerminator(new BranchInst(edge, block));
+                if (branch.getThenBlock() == block) branch.setThenBlock(edge);
+                if (branch.getElseBlock() == block) branch.setElseBlock(edge);
+                function.getBBlockList().insertAfter(pred, edge);
+                for (PhiInst phi : phis.get(b).values()) phi.replaceIncomingBlock(pred, edge);
+            }
+        }
+    }
+
+    private static Value find(Map<Value, Value> replaced, Value value) {
+        Value to;
+        while ((to = replaced.get(value)) != null) value = to;
+        return value;
+    }
+
+    private void removePhi(int b, PhiInst phi) {
+        phis.get(b).remove(variableOf.get(phi));
+        blocks.get(b).getInstList().remove(phi);
+    }
+}
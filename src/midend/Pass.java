@@ -0,0 +1,57 @@
+package midend;
+
+import midend.mir.Function;
+import midend.mir.Module;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A transform of IR run by PassManager, on each function of a module unless it
+ * works on the whole module by overriding run(Module, AnalysisManager).
+ */
+public abstract class Pass {
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+
+    /**
+     * @return the name of the pass, as in PassManager.getDescription().
+     */
+    public abstract String getName();
+
+    /**
+     * @return if function changed, after which the analyses of it not preserved are invalidated.
+     */
+    public abstract boolean run(Function function, AnalysisManager analyses);
+
+    /**
+     * @return the count of functions changed.
+     */
+    public int run(Module module, AnalysisManager analyses) {
+        int changed = 0;
+        for (Function function : module.getFunctionList()) {
+            if (function.getBBlockList().isEmpty()) continue;
+            if (run(function, analyses)) {
+                analyses.invalidate(function, getPreserved());
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return analyses which stay valid when the pass changes a function.
+     */
+    public Set<Analysis<?>> getPreserved() { return Collections.emptySet(); }
+
+    /**
+     * Count items the pass worked on, reported with the time it took.
+     */
+    protected void count(String items, long count) {
+        Long before = counts.get(items);
+        counts.put(items, before == null ? count : before + count);
+    }
+
+    public Map<String, Long> getCounts() { return counts; }
+}
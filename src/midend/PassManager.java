@@ -0,0 +1,73 @@
+package midend;
+
+import midend.mir.Module;
+import utils.TimeReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs passes over a module one after another, sharing the analyses of its
+ * functions between them through an AnalysisManager. The pipelines of -O1 and
+ * -O2 are given by forLevel(). Each pass is a phase of the TimeReport, if any,
+ * with the count of functions it changed and of IR instructions after it.
+ */
+public class PassManager {
+    private final List<Pass> passes = new ArrayList<>();
+    private final AnalysisManager analyses = new AnalysisManager();
+    private TimeReport report = null;
+
+    /**
+     * @return the passes of -O<level>: none for 0, mem2reg for 1, and for 2 simplifycfg
+     *  before, which makes fewer blocks to promote over and to jump through.
+     */
+    public static PassManager forLevel(int level) {
+        PassManager manager = new PassManager();
+        if (level >= 2) manager.add(new SimplifyCFG());
+        if (level >= 1) manager.add(new Mem2Reg.Promote());
+        return manager;
+    }
+
+    public PassManager add(Pass pass) {
+        for (Pass added : passes) {
+            if (added.getName().equals(pass.getName())) return this;
+        }
+        passes.add(pass);
+        return this;
+    }
+
+    public PassManager setTimeReport(TimeReport report) {
+        this.report = report;
+        return this;
+    }
+
+    public boolean isEmpty() { return passes.isEmpty(); }
+
+    /**
+     * @return the names of the passes, as in "simplifycfg,mem2reg".
+     */
+    public String getDescription() {
+        StringBuilder builder = new StringBuilder();
+        for (Pass pass : passes) builder.append(builder.length() == 0 ? "" : ",").append(pass.getName());
+        return builder.toString();
+    }
+
+    public AnalysisManager getAnalyses() { return analyses; }
+
+    public void run(Module module) {
+        for (Pass pass : passes) {
+            if (report != null) report.begin("PassManager." + pass.getName());
+            int computed = analyses.getComputed();
+            int changed = pass.run(module, analyses);
+            if (report != null) {
+                report.count("functions changed", changed);
+                for (Map.Entry<String, Long> count : pass.getCounts().entrySet())
+                    report.count(count.getKey(), count.getValue());
+                report.count("analyses computed", analyses.getComputed() - computed);
+                report.count("IR instructions", module.getInstCount());
+            }
+        }
+        if (report != null) report.end();
+    }
+}
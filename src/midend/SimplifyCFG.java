@@ -0,0 +1,87 @@
+package midend;
+
+import midend.mir.BasicBlock;
+import midend.mir.Function;
+import midend.mir.Instruction.BranchInst;
+import midend.mir.Instruction.PhiInst;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes branches to blocks which do nothing but branch on straight to where those
+ * go, as AssemblyBuilder leaves such blocks at the ends of ifs and loops, then
+ * removes blocks no longer reachable. Blocks are not branched to anew if they have
+ * phis, whose values are by the blocks they come from, nor if they are the entry,
+ * which sets up the stack frame in MIPS.
+ */
+public class SimplifyCFG extends Pass {
+    @Override
+    public String getName() { return "simplifycfg"; }
+
+    @Override
+    public boolean run(Function function, AnalysisManager analyses) {
+        BasicBlock entry = function.getBBlockList().getBegin();
+        Map<BasicBlock, BasicBlock> targets = new IdentityHashMap<>();
+        int redirected = 0;
+        for (BasicBlock block : function.getBBlockList()) {
+            if (!(block.getTerminator() instanceof BranchInst)) continue;
+            BranchInst branch = (BranchInst) block.getTerminator();
+            BasicBlock then = targetOf(branch.getThenBlock(), entry, targets);
+            if (then != branch.getThenBlock()) {
+                branch.setThenBlock(then);
+                redirected++;
+            }
+            if (branch.getCond() == null) continue;
+            BasicBlock otherwise = targetOf(branch.getElseBlock(), entry, targets);
+            if (otherwise != branch.getElseBlock()) {
+                branch.setElseBlock(otherwise);
+                redirected++;
+            }
+        }
+        if (redirected == 0) return false;
+        count("branches redirected", redirected);
+
+        // Built anew, as branches changed since any graph cached by analyses.
+        FlowGraph graph = function.getFlowGraph();
+        List<BasicBlock> unreachable = new ArrayList<>();
+        for (BasicBlock block : function.getBBlockList()) {
+            if (graph.indexOf(block) < 0) unreachable.add(block);
+        }
+        for (BasicBlock block : unreachable) function.getBBlockList().remove(block);
+        count("blocks removed", unreachable.size());
+        return true;
+    }
+
+    /**
+     * @return where a branch to block may go instead, which is block itself if it does something.
+     */
+    private static BasicBlock targetOf(BasicBlock block, BasicBlock entry, Map<BasicBlock, BasicBlock> targets) {
+        BasicBlock target = targets.get(block);
+        if (target != null) return target;
+        // Blocks on the way are mapped to themselves until resolved, which ends cycles of them.
+        List<BasicBlock> path = new ArrayList<>();
+        target = block;
+        while (isForwarding(target) && !targets.containsKey(target)) {
+            targets.put(target, target);
+            path.add(target);
+            BasicBlock next = ((BranchInst) target.getTerminator()).getThenBlock();
+            if (next == entry || hasPhis(next)) break;
+            target = next;
+        }
+        if (targets.containsKey(target) && !path.contains(target)) target = targets.get(target);
+        for (BasicBlock passed : path) targets.put(passed, target);
+        return target;
+    }
+
+    private static boolean isForwarding(BasicBlock block) {
+        return block.getInstList().isEmpty() && block.getTerminator() instanceof BranchInst
+                && ((BranchInst) block.getTerminator()).getCond() == null;
+    }
+
+    private static boolean hasPhis(BasicBlock block) {
+        return block.getInstList().getBegin() instanceof PhiInst;
+    }
+}
@@ -1,18 +1,23 @@
 package midend.mir;
 
+import frontend.symbolTable.SymbolValueTable.VKind;
 import frontend.token.Tokens;
-import frontend.tree.SysYTree;
-import frontend.tree.SysYTree.*;
+import frontend.tree.FlatTree;
+import frontend.tree.FlatTree.Kind;
 import midend.mir.Instruction.*;
 import midend.mir.LoopRecord.Pair;
 import midend.mir.Type.*;
 import midend.mir.Initial.*;
+import utils.Events;
 import utils.Writer;
 import utils.inodelist.INode;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 public class AssemblyBuilder {
@@ -29,19 +34,25 @@ public class AssemblyBuilder {
      */
     private BasicBlock curBBlock;
     private boolean inGlobal;
+    /** The tree IR is generated from.
+     */
+    private FlatTree tree;
     private GEPInst secondGet = null;
+    private Map<String, String> reused = Collections.emptyMap();
+    private final Map<String, String> functionTexts = new LinkedHashMap<>();
 
     public AssemblyBuilder(Writer writer, Module module) {
         this.writer = writer;
         this.module = module;
     }
 
-    public void generateLLVM(SysYCompilationUnit node) {
+    public void generateLLVM(FlatTree tree) {
         boolean debug = false;
         if (debug) writer.setStdOut();
         else writer.setLlvmBw();
+        this.tree = tree;
         declareLibFunc();
-        visit(node);
+        visitCompUnit(tree.root());
         if (!module.getGlobalList().isEmpty()) {
             for (GlobalVariable var : module.getGlobalList()) {
                 writer.writeln(var.toString());
@@ -49,21 +60,41 @@ public class AssemblyBuilder {
             writer.writeln("");
         }
         for (Function function : module.getFunctionList()) {
-            writer.write(function + "{");
-            writer.writeln("");
-            for (INode inst : function.getParamFetchList()) {
-                writer.writeln("\t" + inst);
-            }
-            for (BasicBlock bBlock : function.getBBlockList()) {
-                writer.writeln(";<label>:" + bBlock.getName() + ":");
-                for (INode inst : bBlock.getInstList()) {
-                    writer.writeln("\t" + inst);
-                }
-                writer.writeln("\t" + bBlock.getTerminator());
+            String name = function.getName().substring(1);
+            String text = reused.containsKey(name) ? reused.get(name) : toLLVM(function);
+            functionTexts.put(name, text);
+            writer.write(text);
+        }
+    }
+
+    /**
+     * Code of functions to write as given instead of generating it, keyed by
+     * function names. Such functions are declared, but their bodies are not visited.
+     */
+    public void reuse(Map<String, String> reused) {
+        this.reused = reused;
+    }
+
+    /**
+     * @return code written for each function, keyed by function names.
+     */
+    public Map<String, String> getFunctionTexts() { return functionTexts; }
+
+    private static String toLLVM(Function function) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(function).append("{\n");
+        for (INode inst : function.getParamFetchList()) {
+            builder.append('\t').append(inst).append('\n');
+        }
+        for (BasicBlock bBlock : function.getBBlockList()) {
+            builder.append(";<label>:").append(bBlock.getName()).append(":\n");
+            for (INode inst : bBlock.getInstList()) {
+                builder.append('\t').append(inst).append('\n');
             }
-            writer.writeln("}");
-            writer.writeln("");
+            builder.append('\t').append(bBlock.getTerminator()).append('\n');
         }
+        builder.append("}\n\n");
+        return builder.toString();
     }
 
     /*------------------------------
@@ -74,9 +105,6 @@ public class AssemblyBuilder {
         writer.writeln(LibFunction.GET_INT);
         writer.writeln(LibFunction.PUT_CH);
         writer.writeln(LibFunction.PUT_INT);
-        builder.addFunctionToTable(LibFunction.GET_INT);
-        builder.addFunctionToTable(LibFunction.PUT_CH);
-        builder.addFunctionToTable(LibFunction.PUT_INT);
         writer.writeln("");
     }
 
@@ -92,11 +120,11 @@ public class AssemblyBuilder {
         return temp;
     }
 
-    private ConstantInt evaluate(Tokens.Token token, Value l, Value r) {
+    private ConstantInt evaluate(Tokens.TokenKind op, Value l, Value r) {
         int lValue = ((ConstantInt) l).getValue();
         int rValue = ((ConstantInt) r).getValue();
         int res = 0;
-        switch (token.getTokenKind()) {
+        switch (op) {
             case PLUS: {
                 res = lValue + rValue;
                 break;
@@ -121,10 +149,10 @@ public class AssemblyBuilder {
         return new ConstantInt(res);
     }
 
-    private ConstantInt evaluate(Tokens.Token token, Value v) {
+    private ConstantInt evaluate(Tokens.TokenKind op, Value v) {
         int value = ((ConstantInt) v).getValue();
         int res = 0;
-        switch (token.getTokenKind()) {
+        switch (op) {
             case PLUS: {
                 res = value;
                 break;
@@ -177,98 +205,133 @@ public class AssemblyBuilder {
         }
     }
 
-    public void visit(SysYCompilationUnit node) {
+    private void visitCompUnit(int node) {
         inGlobal = true;
-        for (SysYBlockItem item : node.getDecls()) {
-            visit((SysYDecl) item);
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.DECL) visitDecl(c);
         }
         inGlobal = false;
-        for (SysYSymbol symbol : node.getFuncDefs()) {
-            visit((SysYFuncDef) symbol);
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.INT_FUNC_DEF || tree.kind(c) == Kind.VOID_FUNC_DEF) {
+                Events.Event event = Events.FUNCTION_IR.begin();
+                visitFuncDef(c);
+                commit(event);
+            }
+        }
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.MAIN_FUNC_DEF) {
+                Events.Event event = Events.FUNCTION_IR.begin();
+                visitMainFuncDef(c);
+                commit(event);
+            }
         }
-        visit((SysYMainFuncDef) node.getMainFuncDef());
     }
 
-    public void visit(SysYFuncDef node) {
-        curFunction = builder.createFunction(node.isReturnInt(), node.getName(), module);
+    /**
+     * Record event of generating curFunction, if it is recorded.
+     */
+    private void commit(Events.Event event) {
+        if (event != null) event.set(0, curFunction.getName()).set(1, curFunction.getInstCount()).commit();
+    }
+
+    private void visitFuncDef(int node) {
+        boolean returnInt = tree.kind(node) == Kind.INT_FUNC_DEF;
+        curFunction = builder.createFunction(returnInt, tree.name(node), tree.payload(node), module);
         module.addFunction(curFunction);
 
-        builder.createSymbolTable();
-        for (SysYTree.SysYSymbol symbol : node.getFuncParams()) {
-            Value value = builder.createFParam(symbol.getName(),
-                    ((SysYFuncParam) symbol).getDimensions(), visit(((SysYFuncParam) symbol).getSecondExp()));
+        builder.pushScope();
+        List<Integer> params = new ArrayList<>();
+        int body = FlatTree.NONE;
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.BLOCK) body = c;
+            else params.add(c);
+        }
+        for (int param : params) {
+            int dimensions = tree.kind(param) == Kind.PARAM ? 0 : tree.firstChild(param) == FlatTree.NONE ? 1 : 2;
+            Value value = builder.createFParam(tree.name(param), dimensions, visitExp(tree.firstChild(param)));
             curFunction.addParam(value);
         }
-        for (int i = 0, len = node.getFuncParams().size(); i < len; i++) {
-            SysYSymbol symbol = node.getFuncParams().get(i);
+        if (reused.containsKey(tree.name(node))) {
+            builder.popScope();
+            return;
+        }
+        for (int i = 0, len = params.size(); i < len; i++) {
+            int param = params.get(i);
             Value value = curFunction.getParams().get(i);
-            curFunction.addParam(builder.createAllocInst(value.getType(), "$", symbol.getName(), false));
+            curFunction.addParam(builder.createAllocInst(value.getType(), VKind.PARAM,
+                    tree.name(param), tree.payload(param), false));
         }
-        for (int i = 0, len = node.getFuncParams().size(); i < len; i++) {
-            SysYSymbol symbol = node.getFuncParams().get(i);
+        for (int i = 0, len = params.size(); i < len; i++) {
+            int param = params.get(i);
             Value value = curFunction.getParams().get(i);
-            curFunction.addParam(builder.createStrInst(symbol.getName(), value, false));
+            curFunction.addParam(builder.createStrInst(tree.payload(param), value, false));
         }
 
         curBBlock = builder.createBlock(curFunction);
         curFunction.addBBlock(curBBlock);
-        visit((SysYBlock) node.getBlock());
+        visitBlock(body);
         if (curBBlock.needTerminator()) {
-            if (node.isReturnInt()) {
+            if (returnInt) {
                 builder.createRetInst(ConstantInt.getZero());
             } else {
                 builder.createRetInst(null);
             }
         }
-        builder.recallSymbolTable();
+        builder.popScope();
     }
 
-    public void visit(SysYMainFuncDef node) {
-        curFunction = builder.createFunction(true, "main", module);
+    private void visitMainFuncDef(int node) {
+        curFunction = builder.createFunction(true, "main", -1, module);
         module.addMainFunction(curFunction);
+        if (reused.containsKey("main")) return;
         curBBlock = builder.createBlock(curFunction);
         curFunction.addBBlock(curBBlock);
 
-        builder.createSymbolTable();
-        visit((SysYBlock) node.getBlock());
+        builder.pushScope();
+        visitBlock(tree.firstChild(node));
         if (curBBlock.needTerminator()) builder.createRetInst(ConstantInt.getZero());
-        builder.recallSymbolTable();
+        builder.popScope();
     }
 
-    public void visit(SysYBlock node) {
-        for (int i = 0, len = node.getBlock().size(); i < len; i++) {
-            SysYBlockItem blockItem = node.getBlock().get(i);
-            if (blockItem instanceof SysYStatement) {
-                visit((SysYStatement) blockItem);
-                if (blockItem instanceof SysYContinue || blockItem instanceof SysYBreak) return;
+    private void visitBlock(int node) {
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.DECL) {
+                visitDecl(c);
+            } else {
+                visitStatement(c);
+                if (tree.kind(c) == Kind.CONTINUE || tree.kind(c) == Kind.BREAK) return;
             }
-            else visit((SysYDecl) blockItem);
         }
     }
 
-    public void visit(SysYDecl node) {
-        for (SysYSymbol symbol : node.getDefs()) {
-            visit((SysYDef) symbol);
+    private void visitDecl(int node) {
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            visitDef(c);
         }
     }
 
-    public void visit(SysYDef node) {
-        boolean isConst = node.isConst();
-        SysYInit init = (SysYInit) node.getInit();
+    private void visitDef(int node) {
+        boolean isConst = tree.kind(node) == Kind.CONST_DEF;
+        int init = FlatTree.NONE;
+        List<Integer> exps = new ArrayList<>();
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.kind(c) == Kind.INIT) init = c;
+            else exps.add(c);
+        }
         Type type;
-        switch (node.getDimensions()) {
+        switch (exps.size()) {
             case 0: {
                 type = IntType.INT32_TYPE;
                 break;
             }
             case 1: {
-                int size = ((ConstantInt) visit(node.getFirstExp())).getValue();
+                int size = ((ConstantInt) visitExp(exps.get(0))).getValue();
                 type = new ArrayType(isConst, size, IntType.INT32_TYPE);
                 break;
             }
             case 2: {
-                int firstSize = ((ConstantInt) visit(node.getFirstExp())).getValue();
-                int secondSize = ((ConstantInt) visit(node.getSecondExp())).getValue();
+                int firstSize = ((ConstantInt) visitExp(exps.get(0))).getValue();
+                int secondSize = ((ConstantInt) visitExp(exps.get(1))).getValue();
                 ArrayType secondArrayType = new ArrayType(isConst, secondSize, IntType.INT32_TYPE);
                 type = new ArrayType(isConst, firstSize, secondArrayType);
                 break;
@@ -280,60 +343,80 @@ public class AssemblyBuilder {
         if (inGlobal) {
             // initial global variables and constants
             Initial initValue;
-            if (init == null) {
+            if (init == FlatTree.NONE) {
                 // 隐式初始化为0
                 initValue = type.isInt32Type() ? new ValueInitial(type, ConstantInt.getZero())
                         : new ZeroInitial(type);
-            } else initValue = visit(init, type);
-            module.addGlobal(builder.createGlobalVar(node.isConst(), type, node.getName(), initValue));
+            } else initValue = visitInit(init, type);
+            module.addGlobal(builder.createGlobalVar(isConst, type, tree.name(node), tree.payload(node), initValue));
         } else {
             // 初始化局部变量
             if (isConst) {
-                builder.addLocalConstToTable(node.getName(), visit(init, type));
+                builder.addLocalConstToTable(tree.payload(node), visitInit(init, type));
             } else {
-                builder.createAllocInst(type, "*", node.getName(), true);
-                if (init != null) initLocalVar(builder.getValueFromTable(node.getName()), visit(init, type));
+                builder.createAllocInst(type, VKind.LOCAL_VAR, tree.name(node), tree.payload(node), true);
+                if (init != FlatTree.NONE)
+                    initLocalVar(builder.getValueFromTable(tree.payload(node)), visitInit(init, type));
             }
         }
     }
 
-    public void visit(SysYStatement node) {
-        if (node instanceof SysYBlock) {
-            builder.createSymbolTable();
-            visit((SysYBlock) node);
-            builder.recallSymbolTable();
-        } else if (node instanceof SysYReturn) {
-            visit((SysYReturn) node);
-        } else if (node instanceof SysYIf) {
-            visit((SysYIf) node);
-        } else if (node instanceof SysYWhile) {
-            visit((SysYWhile) node);
-        } else if (node instanceof SysYAssign) {
-            visit((SysYAssign) node);
-        } else if (node instanceof SysYContinue) {
-            visit((SysYContinue) node);
-        } else if (node instanceof SysYBreak) {
-            visit((SysYBreak) node);
-        } else if (node instanceof SysYExpressionStatement) {
-            visit((SysYExpressionStatement) node);
-        } else if (node instanceof SysYPrintf) {
-            visit((SysYPrintf) node);
+    private void visitStatement(int node) {
+        switch (tree.kind(node)) {
+            case BLOCK: {
+                builder.pushScope();
+                visitBlock(node);
+                builder.popScope();
+                break;
+            }
+            case RETURN: {
+                builder.createRetInst(visitExp(tree.firstChild(node)));
+                break;
+            }
+            case IF: {
+                int cond = tree.firstChild(node), thenStmt = tree.nextSibling(cond), elseStmt = tree.nextSibling(thenStmt);
+                visitIfHelper(cond, () -> visitStatement(thenStmt),
+                        elseStmt == FlatTree.NONE ? null : () -> visitStatement(elseStmt));
+                break;
+            }
+            case WHILE: {
+                int cond = tree.firstChild(node), stmt = tree.nextSibling(cond);
+                visitWhileHelper(cond, () -> visitStatement(stmt));
+                break;
+            }
+            case ASSIGN: {
+                int lVal = tree.firstChild(node);
+                Value value = visitExp(tree.nextSibling(lVal));
+                Value left = visitLVal(lVal, true);
+                builder.createStrInst(value, left, true);
+                break;
+            }
+            case CONTINUE: {
+                loopStack.peek().add("Continue", curBBlock);
+                break;
+            }
+            case BREAK: {
+                loopStack.peek().add("Break", curBBlock);
+                break;
+            }
+            case EXP_STMT: {
+                if (tree.firstChild(node) != FlatTree.NONE) visitExp(tree.firstChild(node));
+                break;
+            }
+            case PRINTF: {
+                visitPrintf(node);
+                break;
+            }
         }
     }
 
-    public void visit(SysYExpressionStatement node) {
-        if (!node.isEmpty()) visit(node.getExp());
-    }
-
-    public void visit(SysYAssign node) {
-        Value value = visit(node.getExpression());
-        Value left = visit(node.getlVal(), true);
-        builder.createStrInst(value, left, true);
-    }
-
-    private void visitEqHelper(SysYEqExp cond, SysYStatement trueBlock, SysYStatement falseBlock) {
+    /**
+     * @param trueBlock visits the statement run if cond holds.
+     * @param falseBlock visits the statement run if cond fails, or null.
+     */
+    private void visitEqHelper(int cond, Runnable trueBlock, Runnable falseBlock) {
         // main block
-        Value condValue = visit(cond);
+        Value condValue = visitExp(cond);
         if (!condValue.getType().isInt1Type())
             condValue = builder.createBinaryInst(Tokens.TokenKind.NEQ, condValue, ConstantInt.getZero()).getResValue();
         BranchInst inst = builder.createBranchInst(condValue);
@@ -347,12 +430,12 @@ public class AssemblyBuilder {
         // first if block -- then block
         createNewBlock(false);
         inst.setThenBlock(curBBlock);
-        visit(trueBlock);
+        trueBlock.run();
 
         BasicBlock thenTemp = createNewBlock(false);
         inst.setElseBlock(curBBlock);
         if (falseBlock != null) {
-            visit(falseBlock);
+            falseBlock.run();
             BasicBlock elseTemp = createNewBlock(false);
             if (elseTemp.needTerminator())
                 elseTemp.setTerminator(builder.createBranchInst(curBBlock));
@@ -361,45 +444,29 @@ public class AssemblyBuilder {
             thenTemp.setTerminator(builder.createBranchInst(curBBlock));
     }
 
-    private void visitLAndHelper(SysYLAndExp cond, SysYStatement trueBlock, SysYStatement falseBlock) {
-        if (cond.getToken() == null) {
-            visitEqHelper((SysYEqExp) cond.getLeftExp(), trueBlock, falseBlock);
-        } else {
-            visitLAndHelper((SysYLAndExp) cond.getLeftExp(),
-                    new SysYIf(cond.getRightExp(), trueBlock, falseBlock), falseBlock);
-        }
-    }
-
-    private void visitLOrHelper(SysYLOrExp cond, SysYStatement trueBlock, SysYStatement falseBlock) {
-        if (cond.getToken() == null) {
-            visitLAndHelper((SysYLAndExp) cond.getLeftExp(), trueBlock, falseBlock);
+    /**
+     * Short-circuit evaluation: the right operand of '&&' is tested only if the
+     * left one holds, and that of '||' only if the left one fails.
+     */
+    private void visitIfHelper(int cond, Runnable trueBlock, Runnable falseBlock) {
+        if (tree.kind(cond) == Kind.BINARY && tree.op(cond) == Tokens.TokenKind.OR) {
+            int right = tree.nextSibling(tree.firstChild(cond));
+            visitIfHelper(tree.firstChild(cond), trueBlock, () -> visitIfHelper(right, trueBlock, falseBlock));
+        } else if (tree.kind(cond) == Kind.BINARY && tree.op(cond) == Tokens.TokenKind.AND) {
+            int right = tree.nextSibling(tree.firstChild(cond));
+            visitIfHelper(tree.firstChild(cond), () -> visitIfHelper(right, trueBlock, falseBlock), falseBlock);
         } else {
-            visitLOrHelper((SysYLOrExp) cond.getLeftExp(), trueBlock,
-                    new SysYIf(cond.getRightExp(), trueBlock, falseBlock));
+            visitEqHelper(cond, trueBlock, falseBlock);
         }
     }
 
-    private void visitIfHelper(SysYExpression cond, SysYStatement trueBlock, SysYStatement falseBlock) {
-        if (cond instanceof SysYCond)
-            visitLOrHelper((SysYLOrExp) ((SysYCond) cond).getCond(), trueBlock, falseBlock);
-        else if (cond instanceof SysYLOrExp)
-            visitLOrHelper((SysYLOrExp) cond, trueBlock, falseBlock);
-        else if (cond instanceof SysYLAndExp)
-            visitLAndHelper((SysYLAndExp) cond, trueBlock, falseBlock);
-        else visitEqHelper((SysYEqExp) cond, trueBlock, falseBlock);
-    }
-
-    public void visit(SysYIf node) {
-        visitIfHelper(node.getCond(), node.getThenStmt(), node.getElseStmt());
-    }
-
-    private void visitWhileHelper(SysYExpression cond, SysYStatement trueBlock) {
+    private void visitWhileHelper(int cond, Runnable trueBlock) {
         createNewBlock(true);
 
         // push loop block into stack
         loopStack.push(new LoopRecord());
 
-        visitIfHelper(cond, trueBlock, new SysYBreak());
+        visitIfHelper(cond, trueBlock, () -> loopStack.peek().add("Break", curBBlock));
 
         BasicBlock condBlock = loopStack.peek().getCondBlock();
         curBBlock.setTerminator(builder.createBranchInst(condBlock));
@@ -418,135 +485,107 @@ public class AssemblyBuilder {
         loopStack.pop();
     }
 
-    public void visit(SysYWhile node) {
-        visitWhileHelper(node.getCond(), node.getStmt());
-    }
-
-    public void visit(SysYContinue node) {
-        loopStack.peek().add("Continue", curBBlock);
-    }
-
-    public void visit(SysYBreak node) {
-        loopStack.peek().add("Break", curBBlock);
-    }
-
-    public void visit(SysYReturn node) {
-        builder.createRetInst(visit(node.getExpression()));
-    }
-
-    public Value visit(SysYExpression node) {
-        if (node == null) return null;
-        else if (node instanceof SysYUnaryExp) {
-            return visit((SysYUnaryExp) node);
-        } else if (node instanceof SysYBinaryExp) {
-            return visit((SysYBinaryExp) node);
-        } else if(node instanceof SysYIntC) {
-            return visit((SysYIntC) node);
-        } else if (node instanceof SysYCond) {
-            return visit((SysYCond) node);
-        } else if (node instanceof SysYLVal) {
-            return visit((SysYLVal) node, false);
-        } else if (node instanceof SysYFuncCall) {
-            return visit((SysYFuncCall) node);
-        } else if (node instanceof SysYGetInt) {
-            return visit((SysYGetInt) node);
-        } else if (node instanceof SysYPrintf) {
-            return visit((SysYPrintf) node);
-        }
-        return null;
-    }
-
-    public Value visit(SysYGetInt node) {
-        return builder.createFuncCallInst("getint", new ArrayList<>()).getResValue();
-    }
-
-    public Value visit(SysYPrintf node) {
-        Object[] strings = Arrays.stream(node.getFormat().replace("\\n", "\n").split("%d"))
+    private Value visitExp(int node) {
+        if (node == FlatTree.NONE) return null;
+        switch (tree.kind(node)) {
+            case UNARY:
+                return visitUnaryExp(node);
+            case BINARY:
+                return visitBinaryExp(node);
+            case INTC:
+                return builder.createConst(tree.payload(node));
+            case LVAL:
+                return visitLVal(node, false);
+            case CALL:
+                return visitFuncCall(node);
+            case GETINT:
+                return builder.createFuncCallInst(LibFunction.GET_INT, new ArrayList<>()).getResValue();
+            default:
+                return null;
+        }
+    }
+
+    private void visitPrintf(int node) {
+        Object[] strings = Arrays.stream(tree.string(node).replace("\\n", "\n").split("%d"))
                 .map(s -> s.replace("\"", "")).toArray();
-        List<SysYExpression> exps = node.getExps();
+        List<Integer> exps = new ArrayList<>();
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) exps.add(c);
         for (int i = 0, len = strings.length; i < len; i++) {
             for (char ch : ((String) strings[i]).toCharArray()) {
-                builder.createFuncCallInst("putch", new ArrayList<Value>() {{
+                builder.createFuncCallInst(LibFunction.PUT_CH, new ArrayList<Value>() {{
                     add(new ConstantInt(ch));
                 }});
             }
             if (i < len - 1) {
                 int finalI = i;
-                builder.createFuncCallInst("putint", new ArrayList<Value>() {{
-                    add(visit(exps.get(finalI)));
+                builder.createFuncCallInst(LibFunction.PUT_INT, new ArrayList<Value>() {{
+                    add(visitExp(exps.get(finalI)));
                 }});
             }
         }
-        return null;
     }
 
-    public Value visit(SysYFuncCall node) {
+    private Value visitFuncCall(int node) {
         ArrayList<Value> params = new ArrayList<>();
-        for (SysYExpression exp : node.getFuncRParams()) {
-            if (exp.isFuncCall())
-                params.add(visit(exp));
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            if (tree.hasCall(c))
+                params.add(visitExp(c));
         }
-        for (int i = 0, len = node.getFuncRParams().size(); i < len; i++) {
-            SysYExpression exp = node.getFuncRParams().get(i);
-            if (!exp.isFuncCall())
-                params.add(i, visit(exp));
+        int i = 0;
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c), i++) {
+            if (!tree.hasCall(c))
+                params.add(i, visitExp(c));
         }
-        return builder.createFuncCallInst(node.getName(), params).getResValue();
+        return builder.createFuncCallInst(tree.payload(node), params).getResValue();
     }
 
-    public Value visit(SysYUnaryExp node) {
-        Value value = visit(node.getUnaryExp());
+    private Value visitUnaryExp(int node) {
+        Tokens.TokenKind op = tree.op(node);
+        Value value = visitExp(tree.firstChild(node));
         if (value instanceof ConstantInt) {
-            return evaluate(node.getUnaryOp(), value);
-        } else if (node.getUnaryOp().getTokenKind() == Tokens.TokenKind.MINUS){
-            return builder.createBinaryInst(node.getUnaryOp().getTokenKind(),
+            return evaluate(op, value);
+        } else if (op == Tokens.TokenKind.MINUS){
+            return builder.createBinaryInst(op,
                     ConstantInt.getZero(), value).getResValue();
-        } else if (node.getUnaryOp().getTokenKind() == Tokens.TokenKind.NOT) {
+        } else if (op == Tokens.TokenKind.NOT) {
             return builder.createBinaryInst(Tokens.TokenKind.EQL, value, ConstantInt.getZero()).getResValue();
         } else {
             return value;
         }
     }
 
-    public Value visit(SysYBinaryExp node) {
-        if (node.getToken() == null) {
-            return visit(node.getLeftExp());
-        } else {
-            Value lValue = visit(node.getLeftExp()), rValue = visit(node.getRightExp());
-            if (lValue instanceof ConstantInt && rValue instanceof ConstantInt
-                    && node.getToken().getTokenKind().isALUOp())
-                return evaluate(node.getToken(), lValue, rValue);
-            else {
-                if (lValue.getType().isInt1Type()) lValue = builder.createZExtInst(lValue).getTo();
-                if (rValue.getType().isInt1Type()) rValue = builder.createZExtInst(rValue).getTo();
-                return builder.createBinaryInst(node.getToken().getTokenKind(), lValue, rValue).getResValue();
-            }
+    private Value visitBinaryExp(int node) {
+        Tokens.TokenKind op = tree.op(node);
+        int left = tree.firstChild(node);
+        Value lValue = visitExp(left), rValue = visitExp(tree.nextSibling(left));
+        if (lValue instanceof ConstantInt && rValue instanceof ConstantInt
+                && op.isALUOp())
+            return evaluate(op, lValue, rValue);
+        else {
+            if (lValue.getType().isInt1Type()) lValue = builder.createZExtInst(lValue).getTo();
+            if (rValue.getType().isInt1Type()) rValue = builder.createZExtInst(rValue).getTo();
+            return builder.createBinaryInst(op, lValue, rValue).getResValue();
         }
     }
 
-    public Value visit(SysYIntC node) {
-        return builder.createConst(node.getValue());
-    }
-
-    public Initial visit(SysYInit node, Type type) {
+    private Initial visitInit(int node, Type type) {
         if (type.isArrayType()) {
             ArrayList<Initial> values = new ArrayList<>();
-            for (SysYExpression exp : node.getExpression()) {
-                values.add(visit((SysYInit) exp, ((ArrayType) type).getBaseType()));
+            for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+                values.add(visitInit(c, ((ArrayType) type).getBaseType()));
             }
             return new ArrayInitial(type, values);
         } else {
-            return new ValueInitial(type, visit(node.getExpression().get(0)));
+            return new ValueInitial(type, visitExp(tree.firstChild(node)));
         }
     }
 
-    public Value visit(SysYLVal node, boolean needPointer) {
-        Value pointer = builder.getValueFromTable(node.getName());
+    private Value visitLVal(int node, boolean needPointer) {
+        Value pointer = builder.getValueFromTable(tree.payload(node));
         ArrayList<Value> indexes = new ArrayList<>();
         boolean flag = true;
-        if (node.getFirstExp() != null) {
-            indexes.add(visit(node.getFirstExp()));
-            if (node.getSecondExp() != null) indexes.add(visit(node.getSecondExp()));
+        for (int c = tree.firstChild(node); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+            indexes.add(visitExp(c));
         }
 
         for (Value value : indexes) {
@@ -560,7 +599,7 @@ public class AssemblyBuilder {
                 }
                 return ((ValueInitial) pointer).getValue();
             } else {
-                pointer = builder.getValueFromTable("@" + node.getName());
+                pointer = builder.getPointerFromTable(tree.payload(node));
             }
         }
 
@@ -585,8 +624,4 @@ public class AssemblyBuilder {
             else return builder.createLdInst(pointer).getTo();
         }
     }
-
-    public Value visit(SysYCond node) {
-        return visit((SysYBinaryExp) node.getCond());
-    }
 }
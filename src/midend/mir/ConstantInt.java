@@ -2,13 +2,16 @@ package midend.mir;
 
 public class ConstantInt extends Value {
     private final int value;
-    private static final ConstantInt zero = new ConstantInt(0);
 
     public ConstantInt(int value) { this.value = value; }
 
     public int getValue() { return value; }
 
-    public static ConstantInt getZero() { return zero; }
+    /**
+     * @return a new zero. Constants record their uses, so one zero shared by all
+     *  modules would grow without end and be written to from all threads.
+     */
+    public static ConstantInt getZero() { return new ConstantInt(0); }
 
     @Override
     public Type getType() {
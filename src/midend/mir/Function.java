@@ -1,15 +1,21 @@
 package midend.mir;
 
 import backend.MIPSCode;
+import midend.FlowGraph;
 import utils.inodelist.IList;
 import utils.inodelist.INode;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 public class Function extends GlobalValue {
     private final IList<INode> paramFetchList = new IList<>();
     private final IList<BasicBlock> basicBlockList = new IList<>();
     private final ArrayList<Value> params = new ArrayList<>();
+    /** Values of local variables promoted to registers by midend.Mem2Reg.
+     */
+    private final LinkedHashSet<Value> promoted = new LinkedHashSet<>();
+    private FlowGraph flowGraph = null;
     private Module parent;
 
     public Function() {}
@@ -25,6 +31,20 @@ public class Function extends GlobalValue {
 
     public IList<INode> getParamFetchList() { return paramFetchList; }
 
+    /**
+     * @return values stored to local variables and read where the variables were loaded,
+     *  and phis. Unlike other values they outlive the expressions computing them.
+     */
+    public LinkedHashSet<Value> getPromoted() { return promoted; }
+
+    /**
+     * @return the flow graph of the function, built again if its blocks changed since.
+     */
+    public FlowGraph getFlowGraph() {
+        if (flowGraph == null || flowGraph.isStale()) flowGraph = FlowGraph.of(this);
+        return flowGraph;
+    }
+
     public String getName() { return name; }
 
     public Module getParent() { return parent; }
@@ -37,6 +57,15 @@ public class Function extends GlobalValue {
 
     public void addParam(MIPSCode inst) { paramFetchList.addBack(inst); }
 
+    /**
+     * @return the count of instructions, of IR or of MIPS as the function is.
+     */
+    public int getInstCount() {
+        int count = paramFetchList.size();
+        for (BasicBlock block : basicBlockList) count += block.getInstList().size();
+        return count;
+    }
+
     @Override
     public String toString() {
         return  "define dso_local " + type + " " + name + "(" +
@@ -5,8 +5,12 @@ import midend.mir.Type.*;
 import midend.mir.Instruction.BinaryInst.BinaryOp;
 import frontend.token.Tokens;
 import frontend.symbolTable.SymbolValueTable;
+import frontend.symbolTable.SymbolValueTable.Entry;
+import frontend.symbolTable.SymbolValueTable.VKind;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 public class IRBuilder {
     /** The count of register used.
@@ -14,13 +18,13 @@ public class IRBuilder {
     private int labelCount = 0;
     private BasicBlock block;
     /**
-     * local const : &+name - initial                           constant
-     * local var : *+name - value(type, regName, identName)    alloca
-     * func param : $+name - value(type, regName, identName)   alloca
-     * function : @+name - value(type, @+regName)           define
-     * global var : @+name - value(type, @+regName)         define
+     * Symbols keyed by ids of their names, see SymbolValueTable.Entry.
      */
-    private SymbolValueTable curTable = new SymbolValueTable(null);
+    private final SymbolValueTable curTable = new SymbolValueTable();
+
+    /** Functions keyed by ids of their names.
+     */
+    private final Map<Integer, Function> functions = new HashMap<>();
 
     public IRBuilder() {}
 
@@ -28,47 +32,48 @@ public class IRBuilder {
 
     private String getBlockName() { return "" + (++labelCount); }
 
-    public Value getValueFromTable(String name) {
-        Value from = curTable.findSymbolInAll("*" + name);
-        if (from == null) from = curTable.findSymbolInAll("&" + name);
-        if (from == null) from = curTable.findSymbolInAll("$" + name);
-        if (from == null) from = curTable.findSymbolInAll("@" + name);
-        return from;
+    public Value getValueFromTable(int id) {
+        Entry entry = curTable.findSymbolInAll(id);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * @return the global variable of a global const.
+     */
+    public Value getPointerFromTable(int id) {
+        Entry entry = curTable.findSymbolInAll(id);
+        return entry == null ? null : entry.getPointer();
     }
 
-    public void createSymbolTable() { curTable = new SymbolValueTable(curTable); }
+    public void pushScope() { curTable.pushScope(); }
 
-    public void recallSymbolTable() { curTable = curTable.getParent(); }
+    public void popScope() { curTable.popScope(); }
 
-    public GlobalVariable createGlobalVar(boolean isConst, Type type, String name, Initial initial) {
+    public GlobalVariable createGlobalVar(boolean isConst, Type type, String name, int id, Initial initial) {
         String ident = name;
         name = "@" + name;
-        Value value;
+        Value value = new Value(new PointerType(type), name, ident);
         if (isConst) {
-            value = new Value(new PointerType(type), name, ident);
-            curTable.addSymbol("@" + name, value);
-            value = initial;
+            curTable.addSymbol(id, new Entry(VKind.GLOBAL_CONST, initial, value));
         } else {
-            value = new Value(new PointerType(type), name, ident);
+            curTable.addSymbol(id, new Entry(VKind.GLOBAL_VAR, value));
         }
-        curTable.addSymbol(name, value);
         return new GlobalVariable(isConst, type, name, ident, initial);
     }
 
-    public void addLocalConstToTable(String name, Initial initial) {
-        curTable.addSymbol("&" + name, initial);
-    }
-
-    public void addFunctionToTable(LibFunction function) {
-        curTable.addSymbol(function.getName(), function);
+    public void addLocalConstToTable(int id, Initial initial) {
+        curTable.addSymbol(id, new Entry(VKind.LOCAL_CONST, initial));
     }
 
-    public Function createFunction(boolean returnInt, String name, Module parent) {
+    /**
+     * @param id the id of the name, or -1 for main.
+     */
+    public Function createFunction(boolean returnInt, String name, int id, Module parent) {
         name = "@" + name;
         labelCount = -1;
         Type type = returnInt ? IntType.INT32_TYPE : VoidType.VOID_TYPE;
         Function function = new Function(type, name, parent);
-        curTable.addSymbol(name, function);
+        if (id >= 0) functions.put(id, function);
         return function;
     }
 
@@ -96,19 +101,19 @@ public class IRBuilder {
 
     public BranchInst createBranchInst(BasicBlock target) { return new BranchInst(block, target); }
 
-    public AllocInst createAllocInst(Type type, String prefix, String name, boolean add) {
+    public AllocInst createAllocInst(Type type, VKind kind, String name, int id, boolean add) {
         String regName = getRegName();
         AllocInst inst;
 
-        curTable.addSymbol(prefix + name, new Value(new PointerType(type), regName, name));
+        curTable.addSymbol(id, new Entry(kind, new Value(new PointerType(type), regName, name)));
 
         inst = new AllocInst(block, new Value(type, regName, name));
         if(add) block.addInst(inst);
         return inst;
     }
 
-    public MemoryInst createStrInst(String name, Value from, boolean add) {
-        return createStrInst(from, getValueFromTable(name), add);
+    public MemoryInst createStrInst(int id, Value from, boolean add) {
+        return createStrInst(from, getValueFromTable(id), add);
     }
 
     public MemoryInst createStrInst(Value from, Value to, boolean add) {
@@ -140,9 +145,11 @@ public class IRBuilder {
         return inst;
     }
 
-    public FuncCallInst createFuncCallInst(String name, ArrayList<Value> params) {
-        Function function = (Function) curTable.findSymbolInAll("@" + name);
+    public FuncCallInst createFuncCallInst(int id, ArrayList<Value> params) {
+        return createFuncCallInst(functions.get(id), params);
+    }
 
+    public FuncCallInst createFuncCallInst(Function function, ArrayList<Value> params) {
         User user;
         if (function.getType().equals(IntType.INT32_TYPE)) {
             user = new User(IntType.INT32_TYPE, getRegName());
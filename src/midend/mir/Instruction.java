@@ -1,7 +1,12 @@
 package midend.mir;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public abstract class Instruction extends User {
     private BasicBlock parent;
@@ -12,6 +17,21 @@ public abstract class Instruction extends User {
 
     public BasicBlock getParent() { return parent; }
 
+    /**
+     * @return values read by the instruction, constants included.
+     */
+    public List<Value> getOperandValues() { return Collections.emptyList(); }
+
+    /**
+     * @return the value defined by the instruction, or null.
+     */
+    public Value getResult() { return null; }
+
+    /**
+     * Read to wherever the instruction reads from.
+     */
+    public void replaceOperand(Value from, Value to) {}
+
     public static class UnaryInst extends Instruction {
         public enum UnaryOp {
             POS,
@@ -21,6 +41,17 @@ public abstract class Instruction extends User {
         private UnaryOp op;
         private Value value;
         private Value resValue;
+
+        @Override
+        public List<Value> getOperandValues() { return Collections.singletonList(value); }
+
+        @Override
+        public Value getResult() { return resValue; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (value == from) value = to;
+        }
     }
 
     public static class BinaryInst extends Instruction {
@@ -43,8 +74,8 @@ public abstract class Instruction extends User {
             }
         }
         private final BinaryOp op;
-        private final Value lValue;
-        private final Value rValue;
+        private Value lValue;
+        private Value rValue;
         private final Value resValue;
 
         public BinaryInst(BasicBlock parent, BinaryOp op, Value lValue, Value rValue, Value resValue) {
@@ -63,6 +94,18 @@ public abstract class Instruction extends User {
 
         public Value getResValue() { return resValue; }
 
+        @Override
+        public List<Value> getOperandValues() { return Arrays.asList(lValue, rValue); }
+
+        @Override
+        public Value getResult() { return resValue; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (lValue == from) lValue = to;
+            if (rValue == from) rValue = to;
+        }
+
         @Override
         public String toString() {
             return resValue + " = " + op + " " + lValue.getType() + " " + lValue + ", " + rValue;
@@ -79,6 +122,9 @@ public abstract class Instruction extends User {
 
         public Value getValue() { return value; }
 
+        @Override
+        public Value getResult() { return value; }
+
         @Override
         public String toString() {
             return value + " = alloca " + value.getType();
@@ -87,7 +133,7 @@ public abstract class Instruction extends User {
 
     public static class RetInst extends Instruction {
         private final Type type;
-        private final Value value;
+        private Value value;
 
         public RetInst(Type type, Value value) {
             this.type = type;
@@ -101,6 +147,16 @@ public abstract class Instruction extends User {
         @Override
         public Type getType() { return type; }
 
+        @Override
+        public List<Value> getOperandValues() {
+            return value == null ? Collections.emptyList() : Collections.singletonList(value);
+        }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (value == from) value = to;
+        }
+
         @Override
         public String toString() {
             return "ret " + type + (value != null ? " " + value : "");
@@ -110,7 +166,7 @@ public abstract class Instruction extends User {
     public static class MemoryInst extends Instruction {
         /** 0 for store, 1 for load*/
         private final int flag;
-        private final Value from;
+        private Value from;
         private final Value to;
 
         public MemoryInst(BasicBlock parent, int flag, Value from, Value to) {
@@ -132,6 +188,22 @@ public abstract class Instruction extends User {
             return to;
         }
 
+        /**
+         * The address of a store is read, and is not replaced.
+         */
+        @Override
+        public List<Value> getOperandValues() {
+            return flag == 1 ? Collections.singletonList(from) : Arrays.asList(from, to);
+        }
+
+        @Override
+        public Value getResult() { return flag == 1 ? to : null; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (this.from == from) this.from = to;
+        }
+
         @Override
         public String toString() {
             if (flag == 1) return to + " = load " + to.getType() + ", " + from.getType() + " " + from;
@@ -140,7 +212,7 @@ public abstract class Instruction extends User {
     }
 
     public static class ZExtInst extends Instruction {
-        private final Value from;
+        private Value from;
         private final Value to;
 
         public ZExtInst(BasicBlock block, Value from, Value to) {
@@ -153,6 +225,17 @@ public abstract class Instruction extends User {
 
         public Value getTo() { return to; }
 
+        @Override
+        public List<Value> getOperandValues() { return Collections.singletonList(from); }
+
+        @Override
+        public Value getResult() { return to; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (this.from == from) this.from = to;
+        }
+
         @Override
         public String toString() {
             return to + " = zext " + from.getType() + " " + from + " to " + to.getType();
@@ -160,7 +243,7 @@ public abstract class Instruction extends User {
     }
 
     public static class BranchInst extends Instruction {
-        private final Value cond;
+        private Value cond;
         private BasicBlock thenBlock;
         private BasicBlock elseBlock;
 
@@ -196,6 +279,16 @@ public abstract class Instruction extends User {
             this.elseBlock = elseBlock;
         }
 
+        @Override
+        public List<Value> getOperandValues() {
+            return cond == null ? Collections.emptyList() : Collections.singletonList(cond);
+        }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (cond == from) cond = to;
+        }
+
         @Override
         public String toString() {
             if (cond != null)
@@ -222,6 +315,19 @@ public abstract class Instruction extends User {
 
         public ArrayList<Value> getParams() { return params; }
 
+        @Override
+        public List<Value> getOperandValues() { return params; }
+
+        @Override
+        public Value getResult() { return resValue; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            for (int i = 0; i < params.size(); i++) {
+                if (params.get(i) == from) params.set(i, to);
+            }
+        }
+
         @Override
         public String toString() {
             return (resValue == null ? "" : resValue + " = ") + "call " + function.getType() + " " + function.getName()
@@ -233,7 +339,7 @@ public abstract class Instruction extends User {
     public static class GEPInst extends Instruction {
         private final Value from;
         private final Value to;
-        private final Value index;
+        private Value index;
         private final boolean flag;
 
         public GEPInst(BasicBlock parent, Value from, Value to, Value index, boolean flag) {
@@ -256,10 +362,83 @@ public abstract class Instruction extends User {
             return index;
         }
 
+        /**
+         * The base of the address is not replaced.
+         */
+        @Override
+        public List<Value> getOperandValues() { return Arrays.asList(from, index); }
+
+        @Override
+        public Value getResult() { return to; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            if (index == from) index = to;
+        }
+
         @Override
         public String toString() {
             return to + " = getelementptr " + ((Type.PointerType) from.getType()).getInnerType() + ", "
                     + from.getType() + " " + from + (flag ? ", i32 0, " : ", ") + index.getType() + " " + index;
         }
     }
+
+    /**
+     * The value of a local variable where control flow merges, made by midend.Mem2Reg.
+     * It takes the value given for the block control comes from.
+     */
+    public static class PhiInst extends Instruction {
+        private final Value resValue;
+        private final LinkedHashMap<BasicBlock, Value> incomings = new LinkedHashMap<>();
+
+        public PhiInst(BasicBlock parent, Value resValue) {
+            super(parent);
+            this.resValue = resValue;
+        }
+
+        public Value getResValue() { return resValue; }
+
+        /**
+         * @return values keyed by the predecessors they come from.
+         */
+        public LinkedHashMap<BasicBlock, Value> getIncomings() { return incomings; }
+
+        public void addIncoming(BasicBlock block, Value value) { incomings.put(block, value); }
+
+        /**
+         * Take the value coming from block from now on from block to, keeping the order.
+         */
+        public void replaceIncomingBlock(BasicBlock from, BasicBlock to) {
+            LinkedHashMap<BasicBlock, Value> old = new LinkedHashMap<>(incomings);
+            incomings.clear();
+            for (Map.Entry<BasicBlock, Value> incoming : old.entrySet()) {
+                incomings.put(incoming.getKey() == from ? to : incoming.getKey(), incoming.getValue());
+            }
+        }
+
+        @Override
+        public List<Value> getOperandValues() { return new ArrayList<>(incomings.values()); }
+
+        @Override
+        public Value getResult() { return resValue; }
+
+        @Override
+        public void replaceOperand(Value from, Value to) {
+            for (Map.Entry<BasicBlock, Value> incoming : incomings.entrySet()) {
+                if (incoming.getValue() == from) incoming.setValue(to);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(resValue + " = phi " + resValue.getType() + " ");
+            String separator = "";
+            for (Map.Entry<BasicBlock, Value> incoming : incomings.entrySet()) {
+                builder.append(separator).append("[ ").append(incoming.getValue())
+                        .append(", %").append(incoming.getKey()).append(" ]");
+                separator = ", ";
+            }
+            return builder.toString();
+        }
+    }
 }
@@ -20,6 +20,16 @@ public class LibFunction extends Function {
         this.params = params;
     }
 
+    /**
+     * Library functions are shared by all modules, which may be built on
+     * different threads at once, so their uses are not recorded.
+     */
+    @Override
+    public void addUse(User user) {}
+
+    @Override
+    public void addUse(Use use) {}
+
     @Override
     public String toString() {
         return "declare " + type + " " + name + "(" +
@@ -23,4 +23,13 @@ public class Module extends INode {
     public IList<Function> getFunctionList() { return functionList; }
 
     public List<GlobalVariable> getGlobalList() { return globalList; }
+
+    /**
+     * @return the count of instructions of all functions, of IR or of MIPS as the module is.
+     */
+    public int getInstCount() {
+        int count = 0;
+        for (Function function : functionList) count += function.getInstCount();
+        return count;
+    }
 }
@@ -0,0 +1,171 @@
+package utils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Events of the compiler for JDK Flight Recorder: phases of compilations, and
+ * generating IR for and lowering each function.
+ * The compiler is built against Java 8, which has no jdk.jfr, so the types of
+ * events are made at run time by jdk.jfr.EventFactory through reflection, where
+ * the JVM has JFR, and there are no events elsewhere. Whether recording is on is
+ * kept up to date by a listener of the recorder, so that while it is off an event
+ * costs a read of a field and no allocation.
+ */
+public class Events {
+    public static final Type PHASE = new Type("sysy.Phase", "Compiler Phase",
+            "phase", String.class);
+    public static final Type FUNCTION_IR = new Type("sysy.FunctionIR", "IR Generation",
+            "function", String.class, "instructions", int.class);
+    /** Instructions of the first pass are those of IR lowered, and of the second those of MIPS.
+     */
+    public static final Type FUNCTION_LOWERING = new Type("sysy.FunctionLowering", "MIPS Lowering",
+            "function", String.class, "pass", String.class, "instructions", int.class);
+
+    private static final List<Type> TYPES = Arrays.asList(PHASE, FUNCTION_IR, FUNCTION_LOWERING);
+
+    /** Methods of jdk.jfr classes, or null without JFR.
+     */
+    private static Method NEW_EVENT, IS_ENABLED, BEGIN, END, COMMIT, SET;
+
+    static {
+        listen();
+    }
+
+    /**
+     * A type of events. Fields of an event are set by their indices, in the order
+     * they are given to the constructor.
+     */
+    public static class Type {
+        private final String name;
+        private Object factory = null;
+        private Object eventType = null;
+        private volatile boolean enabled = false;
+
+        /**
+         * @param fields names and classes of fields, one after another.
+         */
+        private Type(String name, String label, Object... fields) {
+            this.name = name;
+            try {
+                ClassLoader loader = ClassLoader.getSystemClassLoader();
+                Class<?> annotation = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+                Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor", true, loader);
+                Constructor<?> newAnnotation = annotation.getConstructor(Class.class, Object.class);
+                List<Object> annotations = new ArrayList<>();
+                annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.Name", true, loader), name));
+                annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.Label", true, loader), label));
+                annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.Category", true, loader),
+                        new String[]{"SysY Compiler"}));
+                // Stacks would show the reflective calls of Event.commit() only.
+                annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.StackTrace", true, loader), false));
+                List<Object> values = new ArrayList<>();
+                Constructor<?> newDescriptor = descriptor.getConstructor(Class.class, String.class);
+                for (int i = 0; i < fields.length; i += 2) {
+                    values.add(newDescriptor.newInstance(fields[i + 1], fields[i]));
+                }
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory", true, loader);
+                factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, values);
+                eventType = factoryClass.getMethod("getEventType").invoke(factory);
+            } catch (ClassNotFoundException e) {
+                // No JFR in this JVM.
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        public String getName() { return name; }
+
+        public boolean isEnabled() { return enabled; }
+
+        /**
+         * @return a new event begun now, or null if events of this type are not recorded.
+         */
+        public Event begin() {
+            if (!enabled) return null;
+            try {
+                Object event = NEW_EVENT.invoke(factory);
+                BEGIN.invoke(event);
+                return new Event(event);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        private void refresh() {
+            try {
+                enabled = eventType != null && (Boolean) IS_ENABLED.invoke(eventType);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static class Event {
+        private final Object event;
+
+        private Event(Object event) { this.event = event; }
+
+        public Event set(int index, Object value) {
+            try {
+                SET.invoke(event, index, value);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+            return this;
+        }
+
+        /**
+         * End the event now and record it.
+         */
+        public void commit() {
+            try {
+                END.invoke(event);
+                COMMIT.invoke(event);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Find the methods of events, and listen to the recorder for recordings to
+     * start and stop, to refresh whether each type of events is recorded.
+     */
+    private static void listen() {
+        if (PHASE.factory == null) return;
+        try {
+            ClassLoader loader = ClassLoader.getSystemClassLoader();
+            Class<?> event = Class.forName("jdk.jfr.Event", true, loader);
+            NEW_EVENT = Class.forName("jdk.jfr.EventFactory", true, loader).getMethod("newEvent");
+            IS_ENABLED = Class.forName("jdk.jfr.EventType", true, loader).getMethod("isEnabled");
+            BEGIN = event.getMethod("begin");
+            END = event.getMethod("end");
+            COMMIT = event.getMethod("commit");
+            SET = event.getMethod("set", int.class, Object.class);
+
+            Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener", true, loader);
+            Object proxy = Proxy.newProxyInstance(loader, new Class<?>[]{listener}, (self, method, args) -> {
+                switch (method.getName()) {
+                    case "hashCode": return System.identityHashCode(self);
+                    case "equals": return self == args[0];
+                    case "toString": return Events.class.getName() + " listener";
+                    default:
+                        // recorderInitialized() and recordingStateChanged().
+                        for (Type type : TYPES) type.refresh();
+                        return null;
+                }
+            });
+            Method addListener = Class.forName("jdk.jfr.FlightRecorder", true, loader).getMethod("addListener", listener);
+            addListener.invoke(null, proxy);
+            for (Type type : TYPES) type.refresh();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * LLVM IR and MIPS of functions cached in a directory, one file per function
+ * keyed by its fingerprint, see frontend.Fingerprints.
+ * Entries are evicted least recently used first: an entry is touched whenever
+ * it is read, and close() deletes the entries read or written longest ago
+ * while there are more than maxEntries of them.
+ */
+public class FunctionCache {
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final String SUFFIX = ".fn";
+
+    public static class Entry {
+        private final String llvm;
+        private final String mips;
+
+        public Entry(String llvm, String mips) {
+            this.llvm = llvm;
+            this.mips = mips;
+        }
+
+        public String getLlvm() { return llvm; }
+
+        public String getMips() { return mips; }
+    }
+
+    private final File dir;
+    private final int maxEntries;
+    private int hits = 0;
+    private int misses = 0;
+
+    public FunctionCache(String dir, int maxEntries) {
+        this.dir = new File(dir);
+        this.maxEntries = maxEntries;
+        if (!this.dir.isDirectory() && !this.dir.mkdirs())
+            System.err.println("Cannot create cache directory " + dir);
+    }
+
+    private File file(String key) { return new File(dir, key + SUFFIX); }
+
+    /**
+     * @return the entry of key, or null if it is not cached.
+     */
+    public Entry get(String key) {
+        File file = file(key);
+        try {
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            // The length of the IR, then the IR and the MIPS.
+            int newline = content.indexOf('\n');
+            int length = Integer.parseInt(content.substring(0, newline));
+            Entry entry = new Entry(content.substring(newline + 1, newline + 1 + length),
+                    content.substring(newline + 1 + length));
+            file.setLastModified(System.currentTimeMillis());
+            hits++;
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            // Missing or broken entries are misses.
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Cache an entry. It is written aside and moved in place, so that a reader
+     * never sees a part of it.
+     */
+    public void put(String key, String llvm, String mips) {
+        try {
+            File temp = File.createTempFile("entry", ".tmp", dir);
+            Files.write(temp.toPath(), (llvm.length() + "\n" + llvm + mips).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), file(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Evict entries used longest ago while there are more than maxEntries.
+     */
+    public void close() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null || files.length <= maxEntries) return;
+        long[] times = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            times[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        for (int i = 0, count = files.length - maxEntries; i < count; i++) {
+            if (!files[order[i]].delete()) System.err.println("Cannot evict " + files[order[i]]);
+        }
+    }
+
+    public int getHits() { return hits; }
+
+    public int getMisses() { return misses; }
+}
@@ -0,0 +1,188 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outputs of whole compilations cached in a directory, keyed by a hash of the
+ * source and the options. An entry is a directory holding copies of the output
+ * files, which are hard linked on a hit, or copied where links are not supported.
+ * Entries are evicted least recently used first by close(), once all of them take
+ * more than maxBytes. Counts of hits and misses are kept in the directory across runs.
+ * A cache may be used by many threads at once.
+ */
+public class OutputCache {
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    /** Part of every key. Change it whenever the outputs of the compiler change,
+     *  so that outputs of a former version are not reused.
+     */
+    private static final String VERSION = "1";
+
+    private static final String STATS = "stats";
+
+    private final File dir;
+    private final long maxBytes;
+
+    /** Hits and misses of this run, and of all runs as counted by close().
+     */
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private long totalHits = 0;
+    private long totalMisses = 0;
+
+    public OutputCache(String dir, long maxBytes) {
+        this.dir = new File(dir);
+        this.maxBytes = maxBytes;
+        if (!this.dir.isDirectory() && !this.dir.mkdirs())
+            System.err.println("Cannot create cache directory " + dir);
+    }
+
+    /**
+     * @return the key of compiling input with options, or null if input cannot be read.
+     */
+    public String key(String input, List<String> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+            for (String option : options) {
+                digest.update((byte) 0);
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(Paths.get(input)));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) builder.append(String.format("%02x", b));
+            return builder.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Put the cached outputs of key where outputs go.
+     * @return false on a miss, with nothing put.
+     */
+    public boolean fetch(String key, String[] outputs) {
+        File entry = new File(dir, key);
+        if (entry.isDirectory()) {
+            try {
+                for (int i = 0; i < outputs.length; i++) {
+                    Path from = new File(entry, String.valueOf(i)).toPath(), to = Paths.get(outputs[i]);
+                    Files.deleteIfExists(to);
+                    try {
+                        Files.createLink(to, from);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                entry.setLastModified(System.currentTimeMillis());
+                hits.incrementAndGet();
+                return true;
+            } catch (IOException e) {
+                // A broken entry is a miss, and is replaced by store().
+            }
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Cache outputs as those of key. The entry is filled aside and moved in
+     * place, so that a reader never sees a part of it.
+     */
+    public void store(String key, String[] outputs) {
+        File entry = new File(dir, key);
+        try {
+            Path temp = Files.createTempDirectory(dir.toPath(), "entry");
+            for (int i = 0; i < outputs.length; i++) {
+                Files.copy(Paths.get(outputs[i]), temp.resolve(String.valueOf(i)));
+            }
+            if (entry.exists()) delete(entry);
+            try {
+                Files.move(temp, entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Stored by another compilation meanwhile.
+                delete(temp.toFile());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Delete entries used longest ago while all entries take more than maxBytes.
+     */
+    private void evict() {
+        File[] entries = dir.listFiles(file -> file.isDirectory() && !file.getName().startsWith("entry"));
+        if (entries == null) return;
+        long[] sizes = new long[entries.length], times = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            File[] files = entries[i].listFiles();
+            if (files != null) for (File file : files) sizes[i] += file.length();
+            times[i] = entries[i].lastModified();
+            order[i] = i;
+            total += sizes[i];
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        for (int i = 0; i < entries.length && total > maxBytes; i++) {
+            delete(entries[order[i]]);
+            total -= sizes[order[i]];
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) for (File child : files) delete(child);
+        if (!file.delete() && file.exists()) System.err.println("Cannot delete " + file);
+    }
+
+    /**
+     * Evict entries, and add the hits and misses of this run to the counts kept
+     * in the directory. The counts are locked while updated, so that concurrent
+     * runs count right.
+     */
+    public void close() {
+        evict();
+        try (FileChannel channel = FileChannel.open(new File(dir, STATS).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            if (!lock.isValid()) return;
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+            String[] counts = new String(buffer.array(), StandardCharsets.UTF_8).trim().split("\\s+");
+            totalHits = hits.get() + (counts.length == 2 ? Long.parseLong(counts[0]) : 0);
+            totalMisses = misses.get() + (counts.length == 2 ? Long.parseLong(counts[1]) : 0);
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap((totalHits + " " + totalMisses + "\n").getBytes(StandardCharsets.UTF_8)), 0);
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int getHits() { return hits.get(); }
+
+    public int getMisses() { return misses.get(); }
+
+    public long getTotalHits() { return totalHits; }
+
+    public long getTotalMisses() { return totalMisses; }
+}
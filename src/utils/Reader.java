@@ -1,131 +1,157 @@
 package utils;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 
 public class Reader {
     /** The current character.
      */
     private char ch;
 
-    /** The input buffer,
-     * the index of next char to be read
-     * and the length of the buffer.
+    /** The whole file, mapped into memory once. Sources are expected
+     * to be ASCII, so every byte is read as one char.
      */
-    private char[] buf;
+    private ByteBuffer buf;
+
+    /** A view of buf used to slice saved tokens out of it.
+     */
+    private ByteBuffer view;
+
+    /** The offset of the current char,
+     * the index of next char to be read,
+     * the end of current line
+     * and the beginning of next line.
+     */
+    private int pos;
     private int bp;
-    private int len;
+    private int lineEnd;
+    private int nextLine;
 
-    /** A character buffer for saved chars.
+    /** The end of the part of the file to be read.
      */
-    private final char[] sbuf = new char[1<<20];
-    private int sp;
+    private int limit;
+
+    /** A scratch buffer for slice(), grown on demand.
+     */
+    private byte[] sbuf = new byte[64];
 
     /** The file to be read.
      */
     private final String filename;
-    private BufferedReader br;
 
     public Reader(String filename) {
         this.filename = filename;
-        try {
-            this.br = new BufferedReader(new FileReader(filename));
-        } catch (FileNotFoundException e) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            this.buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.view = buf.duplicate();
+            this.limit = buf.limit();
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Read a new line of the file and assign it to buf.
+     * A reader over source held in memory, named filename.
+     */
+    public Reader(String filename, byte[] source) {
+        this.filename = filename;
+        this.buf = ByteBuffer.wrap(source);
+        this.view = buf.duplicate();
+        this.limit = buf.limit();
+    }
+
+    private Reader(Reader source, int begin, int end) {
+        this.filename = source.filename;
+        this.buf = source.buf;
+        this.view = buf == null ? null : buf.duplicate();
+        this.nextLine = begin;
+        this.limit = end;
+    }
+
+    /**
+     * A new reader over [begin, end) of the same file, which shares the mapped
+     * buffer but has its own position, so that regions can be read on different threads.
+     * Offsets reported by the new reader are still offsets in the whole file.
+     */
+    public Reader region(int begin, int end) { return new Reader(this, begin, end); }
+
+    public int size() { return buf == null ? 0 : buf.limit(); }
+
+    /**
+     * @return the beginning of the first line starting at or after offset.
+     */
+    public int nextLineStart(int offset) {
+        int size = size();
+        if (offset <= 0) return 0;
+        byte b = 0;
+        int i = offset - 1;
+        // offset - 1 is a terminator unless it is the '\r' of a "\r\n".
+        while (i < size && (b = buf.get(i)) != '\n' && b != '\r') i++;
+        if (b == '\r' && i + 1 < size && buf.get(i + 1) == '\n') i++;
+        return Math.min(i + 1, size);
+    }
+
+    /**
+     * Move to a new line of the file, recognizing '\n', '\r' and "\r\n" as line terminators.
      * @return true if reading succeeds, or false if reaches the end of file.
      */
     public boolean readNextLine() {
-        String s = null;
-        try {
-            s = br.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        if (s != null) {
-            buf = s.toCharArray();
-            bp = 0;
-            len = buf.length;
-            readChar();
-            return true;
-        } else return false;
+        if (nextLine >= limit) return false;
+        int i = nextLine;
+        byte b;
+        while (i < limit && (b = buf.get(i)) != '\n' && b != '\r') i++;
+        bp = nextLine;
+        lineEnd = i;
+        if (i < limit && buf.get(i++) == '\r' && i < limit && buf.get(i) == '\n') i++;
+        nextLine = i;
+        readChar();
+        return true;
     }
 
     /**
-     * Read next char in buffer.
+     * Read next char in current line.
      */
     public void readChar() {
-        if (bp < len) {
-            ch = buf[bp++];
+        if (bp < lineEnd) {
+            pos = bp;
+            ch = (char) (buf.get(bp++) & 0xff);
         } else {
+            pos = lineEnd;
             ch = 0;
         }
     }
 
     public char getChar() { return ch; }
 
-    public void saveChar() { sbuf[sp++] = ch; }
-
-    public String savedToken() { return String.valueOf(sbuf, 0, sp); }
-
-    public void resetSp() { sp = 0; }
-
-    public boolean isDigit() { return ch <= '9' && ch >= '0'; }
-
-    public boolean isAlpha() { return ch <= 'Z' && ch >= 'A' || ch <= 'z' && ch >= 'a'; }
+    public int getPos() { return pos; }
 
-    public boolean isUnder() { return ch == '_'; }
-
-    public boolean isPlus() { return ch == '+'; }
-
-    public boolean isMinus() { return ch == '-'; }
-
-    public boolean isStar() { return ch == '*'; }
-
-    public boolean isDiv() { return ch == '/'; }
-
-    public boolean isMod() { return ch == '%'; }
-
-    // parentheses
-    public boolean isLPar() { return ch == '('; }
-
-    public boolean isRPar() { return ch == ')'; }
-
-    // square brackets
-    public boolean isLSqu() { return ch == '['; }
-
-    public boolean isRSqu() { return ch == ']'; }
-
-    // braces
-    public boolean isLBrace() { return ch == '{'; }
-
-    public boolean isRBrace() { return ch == '}'; }
-
-    public boolean isLess() { return ch == '<'; }
-
-    public boolean isGreater() { return ch == '>'; }
-
-    public boolean isEqual() { return ch == '='; }
-
-    public boolean isNot() { return ch == '!'; }
-
-    public boolean isAnd() { return ch == '&'; }
-
-    public boolean isOr() { return ch == '|'; }
-
-    public boolean isComma() { return ch == ','; }
-
-    public boolean isSemi() { return ch == ';'; }
-
-    public boolean isQuotes() { return ch == '"'; }
+    /**
+     * @return the char at offset of the file.
+     */
+    public char charAt(int offset) { return (char) (buf.get(offset) & 0xff); }
 
-    public boolean isWhitespace() { return ch <= ' '; }
+    /**
+     * @return true if length chars starting at offset of the file are the same as word.
+     */
+    public boolean matches(int offset, int length, String word) {
+        if (word.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (buf.get(offset + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
 
-    public boolean isEnd() { return ch == 0; }
+    /**
+     * Copy length chars starting at offset of the file into a new string.
+     */
+    public String slice(int offset, int length) {
+        if (sbuf.length < length) sbuf = new byte[Math.max(length, sbuf.length * 2)];
+        view.position(offset);
+        view.get(sbuf, 0, length);
+        return new String(sbuf, 0, length, StandardCharsets.ISO_8859_1);
+    }
 }
@@ -0,0 +1,143 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wall time, CPU time and bytes allocated by each phase of a compilation, with
+ * counts of items such as tokens or instructions, as with -ftime-report.
+ * Phases run one after another on the thread of the compilation, whose CPU time
+ * and allocation are measured. Work done on other threads, lexing with -j<n> or
+ * -stream-thread for example, is counted in wall time only.
+ * Each phase is recorded as an event too, see Events.PHASE.
+ */
+public class TimeReport {
+    public static class Phase {
+        private final String name;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+
+        private Phase(String name) { this.name = name; }
+
+        public String getName() { return name; }
+
+        public long getWallNanos() { return wallNanos; }
+
+        /**
+         * @return CPU time, or -1 if it cannot be measured by this JVM, and allocated bytes below.
+         */
+        public long getCpuNanos() { return cpuNanos; }
+
+        public long getAllocatedBytes() { return allocatedBytes; }
+
+        public Map<String, Long> getCounts() { return counts; }
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final List<Phase> phases = new ArrayList<>();
+
+    /** The phase begun and not ended, with what was measured when it began.
+     */
+    private Phase current = null;
+    private Events.Event event = null;
+    private long wallBegin;
+    private long cpuBegin;
+    private long allocatedBegin;
+
+    public void begin(String name) {
+        if (current != null) end();
+        current = new Phase(name);
+        phases.add(current);
+        event = Events.PHASE.begin();
+        if (event != null) event.set(0, name);
+        wallBegin = System.nanoTime();
+        cpuBegin = cpuTime();
+        allocatedBegin = allocatedBytes();
+    }
+
+    public void end() {
+        if (current == null) return;
+        long cpu = cpuTime(), allocated = allocatedBytes();
+        current.wallNanos = System.nanoTime() - wallBegin;
+        current.cpuNanos = cpu < 0 ? -1 : cpu - cpuBegin;
+        current.allocatedBytes = allocated < 0 ? -1 : allocated - allocatedBegin;
+        current = null;
+        if (event != null) event.commit();
+        event = null;
+    }
+
+    /**
+     * Count items of the last phase begun.
+     */
+    public void count(String items, long count) {
+        if (!phases.isEmpty()) phases.get(phases.size() - 1).counts.put(items, count);
+    }
+
+    public List<Phase> getPhases() { return phases; }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * @return the report as a table for humans, one phase a line and the total last.
+     */
+    public String toTable() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-36s %10s %10s %12s  %s%n", "phase", "wall ms", "cpu ms", "alloc KB", "items"));
+        long wall = 0, cpu = 0, allocated = 0;
+        for (Phase phase : phases) {
+            StringBuilder items = new StringBuilder();
+            for (Map.Entry<String, Long> count : phase.counts.entrySet()) {
+                if (items.length() > 0) items.append(", ");
+                items.append(count.getValue()).append(' ').append(count.getKey());
+            }
+            builder.append(String.format("%-36s %10.3f %10.3f %12.1f  %s%n", phase.name, phase.wallNanos / 1e6,
+                    phase.cpuNanos / 1e6, phase.allocatedBytes / 1024.0, items));
+            wall += phase.wallNanos;
+            cpu += Math.max(phase.cpuNanos, 0);
+            allocated += Math.max(phase.allocatedBytes, 0);
+        }
+        builder.append(String.format("%-36s %10.3f %10.3f %12.1f%n", "total", wall / 1e6, cpu / 1e6, allocated / 1024.0));
+        return builder.toString();
+    }
+
+    /**
+     * @return the report as JSON, with times in nanoseconds, for tools to trend.
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder("{\"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            builder.append(i == 0 ? "\n" : ",\n")
+                    .append("  {\"name\": \"").append(phase.name)
+                    .append("\", \"wallNanos\": ").append(phase.wallNanos)
+                    .append(", \"cpuNanos\": ").append(phase.cpuNanos)
+                    .append(", \"allocatedBytes\": ").append(phase.allocatedBytes)
+                    .append(", \"counts\": {");
+            String separator = "";
+            for (Map.Entry<String, Long> count : phase.counts.entrySet()) {
+                builder.append(separator).append('"').append(count.getKey()).append("\": ").append(count.getValue());
+                separator = ", ";
+            }
+            builder.append("}}");
+        }
+        return builder.append("\n]}\n").toString();
+    }
+}
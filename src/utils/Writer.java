@@ -1,12 +1,14 @@
 package utils;
 
-import frontend.token.Tokens.Token;
+import frontend.token.TokenTable;
 import frontend.exception.SysYException;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 
 public class Writer {
@@ -32,6 +34,8 @@ public class Writer {
 
     public Writer(String output, String err, String llvm, String mips) {
         try {
+            // Outputs may be hard links into a cache, see OutputCache, which must not be written through.
+            for (String file : new String[]{output, err, llvm, mips}) Files.deleteIfExists(Paths.get(file));
             this.bw = this.outBw = new BufferedWriter(new FileWriter(output));
             this.errBw = new BufferedWriter(new FileWriter(err));
             this.llvmBw = new BufferedWriter(new FileWriter(llvm));
@@ -41,18 +45,29 @@ public class Writer {
         }
     }
 
-    public void writeToken(Token token) {
+    /**
+     * A writer to the given sinks instead of files, such as StringWriters to keep outputs in memory.
+     */
+    public Writer(java.io.Writer output, java.io.Writer err, java.io.Writer llvm, java.io.Writer mips) {
+        this.bw = this.outBw = new BufferedWriter(output);
+        this.errBw = new BufferedWriter(err);
+        this.llvmBw = new BufferedWriter(llvm);
+        this.mipsBw = new BufferedWriter(mips);
+    }
+
+    public void writeToken(TokenTable tokens, int index) {
+        String value = tokens.getValue(index);
         try {
-            outBw.write(token.getTokenKind().getCode() + " "
-                    + (token.getValue() != null ? token.getValue() : token.getTokenKind().getName()) + "\n");
+            outBw.write(tokens.getKind(index).getCode() + " "
+                    + (value != null ? value : tokens.getKind(index).getName()) + "\n");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public void writeTokens(List<Token> tokens) {
-        for (Token token : tokens)
-            writeToken(token);
+    public void writeTokens(TokenTable tokens) {
+        for (int i = 0, size = tokens.size(); i < size; i++)
+            writeToken(tokens, i);
     }
 
     public void writeError(SysYException exception) {
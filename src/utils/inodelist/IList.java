@@ -6,6 +6,9 @@ public class IList<T extends INode> implements Iterable<T> {
     private T begin;
     private T end;
     private int size;
+    /** Count of changes to the list, see getModCount().
+     */
+    private int modCount = 0;
 
     public IList() {
         size = 0;
@@ -14,6 +17,7 @@ public class IList<T extends INode> implements Iterable<T> {
 
     public void addBack(T node) {
         ++size;
+        ++modCount;
         if (end == null) {
             if (node != null) {
                 node.setPrev(null);
@@ -28,6 +32,7 @@ public class IList<T extends INode> implements Iterable<T> {
 
     public void addFront(T node) {
         ++size;
+        ++modCount;
         if (begin == null) {
             if (node != null) {
                 node.setPrev(null);
@@ -40,6 +45,16 @@ public class IList<T extends INode> implements Iterable<T> {
         }
     }
 
+    /**
+     * Insert node after position, which is in the list.
+     */
+    public void insertAfter(T position, T node) {
+        ++size;
+        ++modCount;
+        position.insertAfter(node);
+        if (position == end) end = node;
+    }
+
     public T getBegin() {
         return begin;
     }
@@ -48,13 +63,24 @@ public class IList<T extends INode> implements Iterable<T> {
         return end;
     }
 
+    @SuppressWarnings("unchecked")
     public void remove(T node) {
         --size;
-        if (node != null) node.remove();
+        ++modCount;
+        if (node == null) return;
+        if (node == begin) begin = (T) node.getNext();
+        if (node == end) end = (T) node.getPrev();
+        node.remove();
     }
 
     public int size() { return size; }
 
+    /**
+     * @return a count changing whenever nodes are added or removed, by which what is
+     *  computed from the list knows if it is out of date.
+     */
+    public int getModCount() { return modCount; }
+
     public boolean isEmpty() { return size == 0; }
 
     @Override